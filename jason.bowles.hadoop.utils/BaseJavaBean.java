@@ -4,28 +4,30 @@
 package jason.bowles.hadoop.utils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 
 
 /**
@@ -64,35 +66,57 @@ import java.util.stream.Collectors;
  *  <ul>  
  *  <BR>		<li>  Load the record using the "loadRecord" method, optionally you can pass in the record number,
  *  <BR>        <li>  Now access your data through getters!  done!
+ *  <BR>        <li>  Passing beans on to the reducer (or the next job)?  The bean is a Writable, use the bean class as the
+ *  <BR>              output value class and it goes across in binary, no need to parse it again on the other side
  *  </ul>
  *  </ol>
  */
-public abstract class BaseJavaBean
+public abstract class BaseJavaBean implements Writable
 {
 	// only set as true when the first record of the file is the header
 	protected boolean useHeader = false;
-    protected String[] loadFields;
     
-	protected Map<String,Integer> beanOrder = new HashMap<String,Integer>();
-	protected Map<Integer,String> orderBean = new HashMap<Integer,String>();
-	protected List<String> fieldList = new ArrayList<String>();
-	protected Set<String> skipList = new HashSet<String>();
-	protected Integer numLastUsed = 0;
+	// field order, skip flags, types and date formats are shared by every instance of the class
+	private BeanSchema schema;
 	protected boolean matched;
+	// true once a record has been loaded, so the next load knows to clear things out first
+	private boolean loaded;
+	// the fields to load, null loads all of them
+	private Projection projection;
+	// lazy loading only tokenizes the record, each field is converted the first time it is asked for
+	private boolean lazy;
+	private DelimitedTokenizer lazyTokens;
+	private final BitSet pending = new BitSet();
+	private Integer lazyRecNumber;
+	// columns that didn't get a value from the last load, the only way to tell a null primitive field from a 0
+	private final BitSet nulls = new BitSet();
 	protected String delimiter = ",";
 	
 	protected enum msgType { ERR, INFO };
 	
-	protected Map<msgType,List<String>> msgs = new HashMap<msgType,List<String>>();	
+	// only built when there is actually something to say
+	// (bad values are only added to it once somebody asks, see getErrMsgs)
+	protected Map<msgType,List<String>> msgs;
 	protected boolean suppressMessages = true;
+	// the bad values of the current record, kept as plain pieces until they are asked for
+	private String[] badFields = new String[4];
+	private String[] badValues = new String[4];
+	private int badCount;
+	// while a generated codec loads the record its bad values are held here, and only counted if it gets through
+	private boolean parsing;
+	private String[] parseErrors;
+	private int parseErrorCount;
 	
 	protected String fullRecord;
+	// when loaded from bytes the full record is only decoded if somebody asks for it
+	private byte[] fullRecordBytes;
+	private int fullRecordLength = -1;
 	
 	protected String outDelimiter = this.delimiter;
 	
-	protected List<String> dateFormats = new ArrayList<String>();
-	
-	protected Map<String, Class<?>> classMap = new HashMap<String, Class<?>>();
+	// the key of the current record, built the first time it is asked for
+	private BeanKey beanKey;
+	private boolean keyed;
 	
 	public boolean isMatched() {
 		return matched;
@@ -118,7 +142,7 @@ public abstract class BaseJavaBean
 	//output format
 	protected String dateOutput = DATE_STRING3;
 	
-	private static String[] parseDateFormats;
+	private static final String[] parseDateFormats;
 	// add date formats to this static block to ensure acceptance
 	static
 	{
@@ -133,6 +157,14 @@ public abstract class BaseJavaBean
 		};
 	}
 	
+	/**
+	 * @return a copy, the formats are shared by every bean on every thread
+	 */
+	static String[] getParseDateFormats()
+	{
+		return parseDateFormats.clone();
+	}
+	
 	
 	/**
 	 * 
@@ -159,7 +191,8 @@ public abstract class BaseJavaBean
 	{
 		super();
 		String[] vals = splitCsvString(headerRec);
-		init(vals,delimiter);
+		this.schema = BeanSchema.forHeader(this, vals);
+		init(delimiter);
 	}
 	
 	/**
@@ -176,9 +209,8 @@ public abstract class BaseJavaBean
 	{
 		Optional<T> instance = Optional.empty();
 		try {
-			instance = Optional.of(clzz.getConstructor().newInstance());
-		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException
-				| NoSuchMethodException | SecurityException e) {
+			instance = Optional.of(BeanPool.newInstance(clzz));
+		} catch (RuntimeException e) {
 			e.printStackTrace();
 		}
 		return instance;
@@ -186,51 +218,52 @@ public abstract class BaseJavaBean
 	
 	public static <T extends BaseJavaBean> String getDelimiter(Class<T> clzz)
 	{
-		Optional<T> opt = BaseJavaBean.getInstance(clzz);
-		return opt.isPresent() ? opt.get().getDefaultDelimiter():",";
+		try {
+			// only makes a bean the first time for each class
+			return BeanPool.defaultDelimiter(clzz);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+		return ",";
 	}
 	
 	private void init(String delimiter)
 	{
-		init(this.getLoadFields(),delimiter);
-	}
-	private void init(String [] headers, String delimiter)
-	{
-		if (headers != null && headers.length > 0)
+		if (this.schema == null)
 		{
-			for (String val: headers)
-			{
-				addName(val);
-			}
+			this.schema = BeanSchema.forBean(this);
 		}
 		this.setDelimiter(delimiter);
 		this.outDelimiter = this.delimiter;
-		loadDateFormats();
-		
-		msgs.put(msgType.ERR, new ArrayList<String>());
-		msgs.put(msgType.INFO, new ArrayList<String>());
-		this.loadFields = this.getLoadFields();
 	}
 	
 	/**
-	 * This method takes the pre-built date formats and passes them into the instance data formats
-	 * later you can add additional formats
+	 * The layout of this bean (shared with every other bean of the same class unless this one was customized)
+	 * @return
+	 */
+	public BeanSchema getSchema()
+	{
+		return schema;
+	}
+	
+	/**
+	 * The pre-built date formats are part of the {@link BeanSchema} now, so there is nothing left to load
+	 * @deprecated the built in formats are always available, use {@link #addDateFormat(String)} for more
 	 */
+	@Deprecated
 	public void loadDateFormats()
 	{
-		for (String format: parseDateFormats)
-		{
-			this.dateFormats.add(format);
-		}
+		// the schema already has them
 	}
 	
 	/**
 	 * Add additional data formats!!! Like I just said yo!
+	 * (these are tried before the built in formats)
 	 * @param format
 	 */
 	public void addDateFormat(String format)
 	{
-		this.dateFormats.add(format);
+		this.schema = this.schema.withDateFormat(format);
 	}
 	
 	/**
@@ -242,9 +275,83 @@ public abstract class BaseJavaBean
 		this.dateOutput = dateFormat;
 	}
 	
+	/**
+	 * A value that couldn't be converted.  It is counted in the {@link BeanErrors} for the class straight away,
+	 * but the message isn't built until somebody calls {@link #getErrMsgs()}
+	 * @param chars
+	 * @param start
+	 * @param end
+	 * @param name the field
+	 */
+	void valueError(CharSequence chars, int start, int end, String name)
+	{
+		if (parsing)
+		{
+			holdError(name);
+		}
+		else
+		{
+			schema.getErrors().valueError(name);
+		}
+		String value = chars.subSequence(start, end).toString();
+		if (!suppressMessages)
+		{
+			addErrMessage("Problem with value: "+value+" On field "+name);
+			return;
+		}
+		if (badCount == badFields.length)
+		{
+			badFields = Arrays.copyOf(badFields, badCount * 2);
+			badValues = Arrays.copyOf(badValues, badCount * 2);
+		}
+		badFields[badCount] = name;
+		badValues[badCount] = value;
+		badCount++;
+	}
+	
+	private void holdError(String name)
+	{
+		if (parseErrors == null)
+		{
+			parseErrors = new String[4];
+		}
+		else if (parseErrorCount == parseErrors.length)
+		{
+			parseErrors = Arrays.copyOf(parseErrors, parseErrorCount * 2);
+		}
+		parseErrors[parseErrorCount++] = name;
+	}
+	
+	/**
+	 * Count the bad values a codec pass held on to (it got through), or drop them (it didn't, the record is
+	 * loaded again the old way and they're found again)
+	 * @param count
+	 */
+	private void endParse(boolean count)
+	{
+		for (int i = 0; i < parseErrorCount; i++)
+		{
+			if (count)
+			{
+				schema.getErrors().valueError(parseErrors[i]);
+			}
+			parseErrors[i] = null;
+		}
+		parseErrorCount = 0;
+		parsing = false;
+	}
+	
+	/**
+	 * @return true if the last record loaded had anything wrong with it
+	 */
+	public boolean hasErrors()
+	{
+		return badCount > 0 || (msgs != null && msgs.containsKey(msgType.ERR) && !msgs.get(msgType.ERR).isEmpty());
+	}
+	
 	public void addErrMessage(String msg)
 	{
-		this.msgs.get(msgType.ERR).add(msg);
+		this.getMsgs(msgType.ERR).add(msg);
 		if (!suppressMessages)
 		{
 			System.err.println(msg);
@@ -253,7 +360,7 @@ public abstract class BaseJavaBean
 	
 	public void addInfoMessage(String msg)
 	{
-		this.msgs.get(msgType.INFO).add(msg);
+		this.getMsgs(msgType.INFO).add(msg);
 		if (!suppressMessages)
 		{
 			System.out.println(msg);
@@ -262,12 +369,44 @@ public abstract class BaseJavaBean
 	
 	public List<String> getErrMsgs()
 	{
-		return msgs.get(msgType.ERR);
+		return getMsgs(msgType.ERR);
 	}
 	
 	public List<String> getInfoMsgs()
 	{
-		return msgs.get(msgType.INFO);
+		return getMsgs(msgType.INFO);
+	}
+	
+	private List<String> getMsgs(msgType type)
+	{
+		if (this.msgs == null)
+		{
+			this.msgs = new HashMap<msgType,List<String>>();
+		}
+		if (badCount > 0)
+		{
+			// everything from here on goes after the bad values
+			List<String> errs = this.msgs.get(msgType.ERR);
+			if (errs == null)
+			{
+				errs = new ArrayList<String>();
+				this.msgs.put(msgType.ERR, errs);
+			}
+			for (int i = 0; i < badCount; i++)
+			{
+				errs.add("Problem with value: "+badValues[i]+" On field "+badFields[i]);
+				badFields[i] = null;
+				badValues[i] = null;
+			}
+			badCount = 0;
+		}
+		List<String> list = this.msgs.get(type);
+		if (list == null)
+		{
+			list = new ArrayList<String>();
+			this.msgs.put(type, list);
+		}
+		return list;
 	}
 	
     /**
@@ -313,9 +452,36 @@ public abstract class BaseJavaBean
 	 * @return
 	 */
 	public String getFullRecord() {
+		if (fullRecord == null && fullRecordLength >= 0)
+		{
+			fullRecord = new String(fullRecordBytes, 0, fullRecordLength, StandardCharsets.UTF_8);
+		}
 		return fullRecord;
 	}
 	
+	/**
+	 * Write the fields in binary, so the bean can be a map output value (or go in a SequenceFile) and the next
+	 * stage gets it back without parsing the record again.  See {@link BinaryCodec} for the layout.
+	 * <br> Only the field values go, not the record they were loaded from ({@link #getFullRecord()} is null
+	 * after {@link #readFields(DataInput)}, use {@link #createHDFSRecord(boolean)} to write it back out).
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException
+	{
+		materialize();
+		schema.getBinaryCodec().write(this, out);
+	}
+	
+	/**
+	 * Load the bean from what {@link #write(DataOutput)} wrote (the bean is cleared first, like loadRecord)
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException
+	{
+		startLoad();
+		schema.getBinaryCodec().read(this, in);
+	}
+	
 	/**
 	 * This will get you the full record and then allow you to put the qualifier in front..
 	 * AND... You can load it from this method.
@@ -326,6 +492,23 @@ public abstract class BaseJavaBean
 		return this.getJavaBeanClass().getName()+"~"+this.getFullRecord();
 	}
 	
+	/**
+	 * Append the record the bean was loaded from to the text as UTF-8 (no String is made if it was loaded from bytes)
+	 * @param text
+	 */
+	void appendFullRecord(Text text)
+	{
+		if (fullRecord == null && fullRecordLength >= 0)
+		{
+			text.append(fullRecordBytes, 0, fullRecordLength);
+		}
+		else if (fullRecord != null)
+		{
+			byte[] bytes = fullRecord.getBytes(StandardCharsets.UTF_8);
+			text.append(bytes, 0, bytes.length);
+		}
+	}
+	
 	public static <T extends BaseJavaBean> T loadJavaBeanRecord_noExcp(String delimiter, String identRecord)
 	{
 		try {
@@ -338,30 +521,27 @@ public abstract class BaseJavaBean
 	
 	public static <T extends BaseJavaBean> T loadJavaBeanRecord(String delimiter, String identRecord) throws Exception
 	{
-		String[] parts = identRecord.split("~");
-		String klazz = parts[0];
-		String record = parts[1];
+		// only the first ~ ends the class name, the record can have them too
+		int split = identRecord.indexOf('~');
+		String klazz = split < 0 ? identRecord : identRecord.substring(0, split);
+		String record = split < 0 ? "" : identRecord.substring(split + 1);
 		
 
 		@SuppressWarnings("unchecked")
 		Class<T> clz = (Class<T>) Class.forName(klazz);
 			
-		T recT = clz.getConstructor(String.class,String.class).newInstance(delimiter,record);
-		
-		return recT;
+		return BeanPool.newInstance(clz, delimiter, record);
 	}
 	
 	public static <T extends BaseJavaBean> T loadJavaBeanRecord(String delimiter, String identRecord, Class<T> type) throws Exception
 	{
-		String[] parts = identRecord.split("~");
-		String klazz = parts[0];
-		String record = parts[1];
+		int split = identRecord.indexOf('~');
+		String klazz = split < 0 ? identRecord : identRecord.substring(0, split);
+		String record = split < 0 ? "" : identRecord.substring(split + 1);
 		
-		Class<?> clz = Class.forName(klazz);
+		Class<? extends T> clz = Class.forName(klazz).asSubclass(type);
 			
-		Object recT = clz.getConstructor(String.class,String.class).newInstance(delimiter,record);
-		
-		return type.cast(recT);
+		return BeanPool.newInstance(clz, delimiter, record);
 	}
 
 	/**
@@ -370,6 +550,23 @@ public abstract class BaseJavaBean
 	 */
 	public void setFullRecord(String recList) {
 		this.fullRecord = recList;
+		this.fullRecordLength = -1;
+	}
+	
+	/**
+	 * Keep a copy of the raw UTF-8 record (the caller's buffer is usually reused, like Hadoop does with Text)
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 */
+	protected void setFullRecord(byte[] bytes, int offset, int length) {
+		if (fullRecordBytes == null || fullRecordBytes.length < length)
+		{
+			fullRecordBytes = new byte[length];
+		}
+		System.arraycopy(bytes, offset, fullRecordBytes, 0, length);
+		this.fullRecordLength = length;
+		this.fullRecord = null;
 	}
 
 	/**
@@ -391,7 +588,7 @@ public abstract class BaseJavaBean
 	 */
 	protected void addName(String name)
 	{
-		addName(name,++numLastUsed,false);
+		addName(name,null,false);
 	}
 	
 	/**
@@ -401,7 +598,7 @@ public abstract class BaseJavaBean
 	 */
 	protected void addName(String name, boolean skip)
 	{
-		addName(name,++numLastUsed,skip);
+		addName(name,null,skip);
 	}
 	
 	/**
@@ -428,36 +625,7 @@ public abstract class BaseJavaBean
 	 */
 	protected void addName(String name, Integer order, boolean skip)
 	{
-		if(order != null)
-		{
-			if(orderBean.containsKey(order))
-			{
-				String newName = name;
-				String oldName = orderBean.get(order);
-				orderBean.put(order,newName);
-				beanOrder.put(newName, order);
-				for(int i=(order+1);orderBean.containsKey(i);i++)
-				{
-					newName = oldName;
-					oldName = orderBean.get(i);
-					orderBean.put(i, newName);
-					beanOrder.put(newName, i);
-					numLastUsed = i;
-				}
-				addName(oldName);
-			}
-			else
-			{
-				numLastUsed = order;
-				beanOrder.put(name, order);
-				orderBean.put(order, name);
-			}
-		}
-		if(skip)
-		{
-			skipList.add(name);
-		}
-		fieldList.add(name);
+		this.schema = this.schema.withName(name, order, skip);
 	}
 	
 	/**
@@ -477,6 +645,7 @@ public abstract class BaseJavaBean
 	
 	/**
 	 * These are the fields that need to be loaded from the incoming flat file
+	 * <br> (not used for a {@link BeanRecord} class, it can return null)
 	 * @return
 	 */
 	protected abstract String[] getLoadFields();
@@ -484,14 +653,58 @@ public abstract class BaseJavaBean
 	/**
 	 * Like I said.. taking care of creating the key string
 	 * Essentially using the {@link #outDelimiter} as field separator
+	 * <br> (it sorts as text, use {@link #createBeanKey()} for a key that sorts numbers and dates by value)
 	 * @return
 	 */
 	public String createKey()
 	{
 		String[] fields = this.getKeyFields();
+		BeanCodec<BaseJavaBean> codec = pending.isEmpty() && fields != null ? schema.getCodec() : null;
+		if (codec != null && (codec = BeanCodecs.forKey(codec, fields)) != null)
+		{
+			try
+			{
+				StringBuilder sb = new StringBuilder();
+				codec.appendKey(this, sb, this.getOutDelimiter());
+				return sb.toString();
+			}
+			catch (RuntimeException e)
+			{
+				// a getter blew up, the old way treats that as a null
+			}
+		}
 		return this.createKey(fields);
 	}
 	
+	/**
+	 * @return a new typed key of the {@link #getKeyFields()}, see {@link BeanKey} (or keep one and {@link BeanKey#set(BaseJavaBean)} it)
+	 */
+	public BeanKey createBeanKey()
+	{
+		return new BeanKey(this);
+	}
+	
+	/**
+	 * The typed key of the {@link #getKeyFields()} for the current record.  It is built once per record, so the
+	 * map output key, the partitioner and any grouping in memory all use the same one (and its hash).
+	 * <br> It's the same key object every time, so {@link BeanKey#copy()} it if you keep it.  If you change a key
+	 * field after it's been asked for, {@link #createBeanKey()} gets you one with the new value.
+	 * @return
+	 */
+	public BeanKey getBeanKey()
+	{
+		if (!keyed)
+		{
+			if (beanKey == null)
+			{
+				beanKey = new BeanKey();
+			}
+			beanKey.set(this);
+			keyed = true;
+		}
+		return beanKey;
+	}
+	
 	public String createKey(String [] fields)
 	{
 		StringBuffer sb = new StringBuffer();
@@ -518,190 +731,803 @@ public abstract class BaseJavaBean
 	 * Method to load a record and thus populate the java bean variables
 	 * (if you need to debug which record is causing you problems.. you best pass in the recNumber)
 	 * 
-	 * This will split the record stirng into an array of String values
+	 * This will split the record string with a {@link DelimitedTokenizer}, only the values of the fields
+	 * that actually get loaded are ever pulled out of the record
 	 * @param record
 	 * @param recNumber
 	 */
 	public void loadRecord(String record, Integer recNumber)
 	{
-		Collections.reverse(this.dateFormats); // ensure any added date formats are first
+		loadRecord(record, recNumber, this.projection);
+	}
+	
+	/**
+	 * Load only the fields in the projection, the others are left null
+	 * @param record
+	 * @param fields
+	 */
+	public void loadRecord(String record, Projection fields)
+	{
+		loadRecord(record, 0, fields);
+	}
+	
+	/**
+	 * Load only the fields in the projection, the others are left null
+	 * @param record
+	 * @param recNumber
+	 * @param fields null to load everything
+	 */
+	public void loadRecord(String record, Integer recNumber, Projection fields)
+	{
+		startLoad();
 		setFullRecord(record);
-		String[] vals;
-		try 
+		Projection.Columns columns = fields == null ? null : fields.columns(schema);
+		DelimitedTokenizer tokens = lazy ? lazyTokenizer() : DelimitedTokenizer.acquire(this.getDelimiter());
+		try
 		{
-			vals = splitCsvString(record);
-		} 
-		catch (RuntimeException e) 
+			try 
+			{
+				tokens.tokenize(record, columns == null ? Integer.MAX_VALUE : columns.width());
+			} 
+			catch (RuntimeException e) 
+			{
+				this.addErrMessage("Problem on record: "+recNumber.toString());
+				throw e;
+			}
+			loadFromTokens(tokens,recNumber,columns);
+		}
+		finally
 		{
-			this.addErrMessage("Problem on record: "+recNumber.toString());
-			throw e;
+			if (!lazy)
+			{
+				tokens.release();
+			}
 		}
-		loadFromList(vals,recNumber);
 	}
 	
 	/**
-	 * Take the array of String values and start using some reflection to load the java bean
-	 * @param values
-	 * @param recNumber
+	 * Clear out the values and messages so the bean can be loaded again, nothing is reallocated.
+	 * <br> loadRecord does this for you when the bean has already been loaded, so one bean can be loaded
+	 * over and over (see {@link BeanPool}).  The fields go back to what a new bean starts with (initializers and
+	 * the no argument constructor), so a reused bean loads a record exactly like <code>new XBean()</code> would.
+	 * Override it (and call super) if you have calculated fields that aren't set up that way.
 	 */
-	protected void loadFromList(String[] values, Integer recNumber)
+	public void reset()
 	{
-		Integer fieldNumber = null; 
-		try
+		clearValues();
+		this.fullRecord = null;
+		this.fullRecordLength = -1;
+		this.pending.clear();
+		this.matched = false;
+		this.loaded = false;
+		this.keyed = false;
+	}
+	
+	/**
+	 * Put the fields back to their defaults and clear the messages, but not the record
+	 * <br> Without a no argument constructor to find the defaults with, the loaded fields are cleared and
+	 * the skip fields are left alone.
+	 */
+	private void clearValues()
+	{
+		BeanAccessor[] accessors = schema.getFieldAccessors();
+		Object[] defaults = schema.getDefaults();
+		for (int i = 0; i < accessors.length; i++)
 		{
-			if(null != values && values.length>0)
+			BeanAccessor accessor = accessors[i];
+			try
 			{
-				for(int i=0;i<values.length;i++)
+				if (defaults == null)
 				{
-					int j=i+1;
-					fieldNumber = j;
-					String name = orderBean.get(j);
-					if(!skipList.contains(name))
+					if (!schema.isSkipped(accessor.getName()))
 					{
-						String inValue = values[i];
-						setJavaBeanField(name, inValue);
+						accessor.clear(this);
 					}
 				}
+				else if (defaults[i] == null || !accessor.set(this, defaults[i]))
+				{
+					accessor.clear(this);
+				}
+			}
+			catch (RuntimeException e)
+			{
+				// same as a setter that couldn't be called
 			}
 		}
-		catch (Throwable t)
+		if (msgs != null)
 		{
-			this.addErrMessage("Problem processing rec: "+recNumber.toString());
-			this.addErrMessage("Problem processing field: "+fieldNumber.toString());
-			throw new RuntimeException(t);
+			for (List<String> list: msgs.values())
+			{
+				list.clear();
+			}
+		}
+		for (int i = 0; i < badCount; i++)
+		{
+			badFields[i] = null;
+			badValues[i] = null;
 		}
+		this.badCount = 0;
+		this.nulls.set(0, schema.getColumnCount());
 	}
-
+	
 	/**
-	 * Look up the setter method name, then call it using reflection with the Object value (which has already been coverted)
-	 * @param name
-	 * @param inValue
+	 * Only load these fields from now on (a bean can call this in its constructor if it never needs the rest)
+	 * @param fields null to go back to loading everything
 	 */
-	public void setJavaBeanField(String name, String inValue) 
+	public void setProjection(Projection fields)
+	{
+		this.projection = fields;
+	}
+	
+	public Projection getProjection()
 	{
-		Object val = convertValue(inValue,name);
-		String setter = getSetterName(name);
-		setValueOfBean(setter, val);
+		return projection;
 	}
 	
 	/**
-	 * Convenience method to check of the case of a null field or an empty field
-	 * (added \N as a check, since that is how Hive outputs null values)
-	 * @param value
-	 * @return
+	 * Turn lazy loading on or off.  A lazy load only finds where the fields are in the record, a field is
+	 * converted (and kept) the first time it is asked for with {@link #getValue(String)}, {@link #getIntValue(String)},
+	 * {@link #getStringValue(String)} and the rest.  Filters that throw most records away after looking at one or
+	 * two fields never pay for converting the others.
+	 * <p> Getters read the field directly, so they need to call {@link #touch(String)} first (or call
+	 * {@link #materialize()} before using them).  Setters are fine, a field that was set is never overwritten
+	 * (a field is taken as set once it no longer holds what a new bean starts with, so setting a field to its
+	 * default is the one thing the record still overwrites).
+	 * <p> {@link #createHDFSRecord(boolean)} writes the fields that were never touched exactly as they were read,
+	 * as long as the out delimiter is the same as the delimiter.
+	 * @param lazy
 	 */
-	private boolean valueIsNull(String value)
+	public void setLazy(boolean lazy)
 	{
-	    if (value == null)
-	    {
-	    	return true;
-	    }
-	    String val = value.trim();
-	    if (val.equalsIgnoreCase(""))
-	    {
-	    	return true;
-	    }
-	    val = value.replace("\\N","");
-	    val = val.trim();
-	    if (val.equalsIgnoreCase(""))
-	    {
-	    	return true;
-	    }
-		return false;
+		if (!lazy)
+		{
+			materialize();
+		}
+		this.lazy = lazy;
+	}
+	
+	public boolean isLazy()
+	{
+		return lazy;
 	}
 	
 	/**
-	 * This is where the rubber hits the road... using a String name and a String value
-	 * Convert the string to the correct datatype and call the setter method on the java bean
-	 * 
-	 * <BR> Valid Data Types: Integer, Double, Date, Boolean, String
-	 * 
-	 * @param value
+	 * Make sure the field has been converted, getters call this when the bean is loaded lazily
+	 * <pre>
+	 * {@code
+	 * public Integer getField2() {
+	 *    touch("field2");
+	 *    return field2;
+	 * }
+	 * }
+	 * </pre>
 	 * @param name
-	 * @return converted Object
 	 */
-	private Object convertValue(String value, String name) 
+	protected void touch(String name)
 	{
-		Object retObj = value;
-		if (!valueIsNull(value))
+		if (!pending.isEmpty())
 		{
-			try {
-				Class<?> clzz = getClassForName(name);
-				
-				if(clzz == Integer.class || clzz == Double.class)
-				{
-					boolean percent = false;
-					boolean negative = false;
-					if(value.startsWith("(") && value.endsWith(")"))
-					{
-						value = value.substring(1);
-						value = value.substring(0, value.length()-1);
-						negative = true;
-					}
-					if(value.startsWith("$"))
-					{
-						value = value.substring(1);
-					}					
-					if(value.endsWith("%"))
-					{
-						value = value.substring(0,value.length()-1);
-						percent = true;
-					}
-					value = value.replaceAll(",", "");
-					Double dbl = Double.parseDouble(value);
-					if(percent)
-					{
-						dbl = dbl/100;
-					}
-					if(negative)
-					{
-						dbl = dbl * -1;
-					}
-					retObj = dbl;
-					if(clzz == Integer.class)
-					{
-						retObj = dbl.intValue();
-					}
-				}
-				if(clzz == Date.class)
-				{
-					retObj = parseDate(value);
-				}
-				if(clzz == Boolean.class)
-				{
-					retObj = this.parseBoolean(value);
-				}
-			} catch (Exception e) {
-				// Do Nothing
-				this.addErrMessage("Problem with value: "+value+" On field "+name);
+			Integer order = schema.getOrder(name);
+			if (order != null)
+			{
+				materialize(order - 1);
 			}
 		}
-		return retObj;
 	}
-
+	
 	/**
-	 * Convert a "1" or "t/T" to True
-	 * or if it is longer than that use the {@link Boolean#parseBoolean(String)}</pre>
-	 * @param argInput
-	 * @return
+	 * Convert every field that a lazy load left for later
 	 */
-	private Boolean parseBoolean(String argInput)
+	public void materialize()
 	{
-		if (argInput == null)
-		{
-			return false;
-		}
-		if(argInput.trim().length() == 1)
+		for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(i + 1))
 		{
-			String newVal = argInput.trim();
-			return newVal.equalsIgnoreCase("1") || newVal.equalsIgnoreCase("t");
+			materialize(i);
 		}
-		return Boolean.parseBoolean(argInput);
 	}
 	
-/// ======== OLD INEFFECIENT METHOD ===========
-//	private Object parseDate(String value) throws ParseException 
-//	{
+	private void materialize(int column)
+	{
+		if (!pending.get(column))
+		{
+			return;
+		}
+		pending.clear(column);
+		if (setSinceLoad(column))
+		{
+			nulls.clear(column);
+			return;
+		}
+		try
+		{
+			setColumnValue(column, lazyTokens, column);
+		}
+		catch (Throwable t)
+		{
+			this.addErrMessage("Problem processing rec: "+lazyRecNumber);
+			this.addErrMessage("Problem processing field: "+(column+1));
+			throw new RuntimeException(t);
+		}
+	}
+	
+	/**
+	 * @param field
+	 * @return the field exactly as it was read if it hasn't been touched since a lazy load, otherwise null
+	 */
+	private String untouchedValue(String field)
+	{
+		Integer order = schema.getOrder(field);
+		if (order == null || !pending.get(order - 1) || schema.formatsValues() || !this.getDelimiter().equals(this.getOutDelimiter()))
+		{
+			return null;
+		}
+		if (setSinceLoad(order - 1))
+		{
+			return null;
+		}
+		String raw = lazyTokens.getRaw(order - 1);
+		// an empty value leaves the field at its default, same as an eager load
+		return raw.isEmpty() ? null : raw;
+	}
+	
+	/**
+	 * @param column zero based, one a lazy load left for later
+	 * @return true if somebody set the field since the load (it isn't what it started with any more)
+	 */
+	private boolean setSinceLoad(int column)
+	{
+		BeanAccessor accessor = schema.getColumnAccessor(column);
+		Object value = getValueOf(accessor);
+		if (schema.hasDefault(column))
+		{
+			return !Objects.equals(value, schema.getDefault(column));
+		}
+		return !accessor.isEmpty(value);
+	}
+	
+	private DelimitedTokenizer lazyTokenizer()
+	{
+		if (lazyTokens == null)
+		{
+			lazyTokens = new DelimitedTokenizer(this.getDelimiter());
+		}
+		else
+		{
+			lazyTokens.setDelimiter(this.getDelimiter());
+		}
+		return lazyTokens;
+	}
+	
+	private void startLoad()
+	{
+		if (loaded)
+		{
+			reset();
+		}
+		else
+		{
+			nulls.set(0, schema.getColumnCount());
+		}
+		loaded = true;
+	}
+	
+	/**
+	 * Load a record straight from a Hadoop Text, without turning it into a String first
+	 * <br> (the Text can be reused as soon as this returns)
+	 * @param record
+	 */
+	public void loadRecord(Text record)
+	{
+		loadRecord(record.getBytes(), 0, record.getLength(), 0);
+	}
+	
+	/**
+	 * Load only the fields in the projection straight from a Hadoop Text, the others are left null
+	 * @param record
+	 * @param fields
+	 */
+	public void loadRecord(Text record, Projection fields)
+	{
+		loadRecord(record.getBytes(), 0, record.getLength(), 0, fields);
+	}
+	
+	/**
+	 * Load a UTF-8 encoded record
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 */
+	public void loadRecord(byte[] bytes, int offset, int length)
+	{
+		loadRecord(bytes, offset, length, 0);
+	}
+	
+	/**
+	 * Load a UTF-8 encoded record.  The delimiters and quotes are found in the raw bytes, and numbers, dates and
+	 * booleans are parsed right out of them.  Only String fields get decoded.
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @param recNumber
+	 */
+	public void loadRecord(byte[] bytes, int offset, int length, Integer recNumber)
+	{
+		loadRecord(bytes, offset, length, recNumber, this.projection);
+	}
+	
+	/**
+	 * Load only the fields in the projection from a UTF-8 encoded record, the others are left null
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @param recNumber
+	 * @param fields null to load everything
+	 */
+	public void loadRecord(byte[] bytes, int offset, int length, Integer recNumber, Projection fields)
+	{
+		startLoad();
+		setFullRecord(bytes, offset, length);
+		Projection.Columns columns = fields == null ? null : fields.columns(schema);
+		DelimitedTokenizer tokens = lazy ? lazyTokenizer() : DelimitedTokenizer.acquire(this.getDelimiter());
+		try
+		{
+			try 
+			{
+				if (lazy)
+				{
+					// the caller's buffer gets reused, so the fields have to come out of our copy
+					tokens.tokenize(fullRecordBytes, 0, length, columns == null ? Integer.MAX_VALUE : columns.width());
+				}
+				else
+				{
+					tokens.tokenize(bytes, offset, length, columns == null ? Integer.MAX_VALUE : columns.width());
+				}
+			} 
+			catch (RuntimeException e) 
+			{
+				this.addErrMessage("Problem on record: "+recNumber.toString());
+				throw e;
+			}
+			loadFromTokens(tokens,recNumber,columns);
+		}
+		finally
+		{
+			if (!lazy)
+			{
+				tokens.release();
+			}
+		}
+	}
+	
+	/**
+	 * Same as {@link #loadFromList(String[], Integer)} but straight from the tokenized record
+	 * @param tokens
+	 * @param recNumber
+	 * @param columns the projected columns, null for all of them
+	 */
+	private void loadFromTokens(DelimitedTokenizer tokens, Integer recNumber, Projection.Columns columns)
+	{
+		if (columns == null && schema.loadsList())
+		{
+			// the subclass loads the values itself, so it gets them the old way
+			String[] values = new String[tokens.count()];
+			for (int i = 0; i < values.length; i++)
+			{
+				values[i] = tokens.get(i);
+			}
+			this.lazyRecNumber = recNumber;
+			loadFromList(values, recNumber);
+			return;
+		}
+		BeanCodec<BaseJavaBean> codec = columns == null && !lazy ? schema.getLoadCodec() : null;
+		if (codec != null)
+		{
+			parsing = true;
+			try
+			{
+				codec.parse(this, tokens);
+				endParse(true);
+				this.lazyRecNumber = recNumber;
+				endLoad(recNumber);
+				return;
+			}
+			catch (RuntimeException e)
+			{
+				// a setter blew up, start over the old way so the errors come out like they always have
+				// (and are only counted once)
+				endParse(false);
+				clearValues();
+			}
+			finally
+			{
+				if (parsing)
+				{
+					endParse(false);
+				}
+			}
+		}
+		int fieldNumber = 0;
+		try
+		{
+			int count = Math.min(tokens.count(), schema.getColumnCount());
+			for(int i=0;i<count;i++)
+			{
+				fieldNumber = i+1;
+				if(columns == null ? !schema.isSkipped(i) : columns.isLoaded(i))
+				{
+					if (lazy)
+					{
+						pending.set(i);
+					}
+					else
+					{
+						setColumnValue(i, tokens, i);
+					}
+				}
+			}
+			this.lazyRecNumber = recNumber;
+		}
+		catch (Throwable t)
+		{
+			this.addErrMessage("Problem processing rec: "+recNumber.toString());
+			this.addErrMessage("Problem processing field: "+fieldNumber);
+			endLoad(recNumber);
+			throw new RuntimeException(t);
+		}
+		endLoad(recNumber);
+	}
+	
+	/**
+	 * Count the record (and hand it to the quarantine) if anything was wrong with it
+	 * @param recNumber
+	 */
+	private void endLoad(Integer recNumber)
+	{
+		if (hasErrors())
+		{
+			schema.getErrors().recordError(this, recNumber);
+		}
+	}
+	
+	/**
+	 * Take the array of String values and start using some reflection to load the java bean
+	 * @param values
+	 * @param recNumber
+	 */
+	protected void loadFromList(String[] values, Integer recNumber)
+	{
+		// new values, so a new key
+		this.keyed = false;
+		Integer fieldNumber = null; 
+		try
+		{
+			if(null != values && values.length>0)
+			{
+				for(int i=0;i<values.length;i++)
+				{
+					fieldNumber = i+1;
+					if(!schema.isSkipped(i))
+					{
+						setColumnValue(i, values[i]);
+					}
+				}
+			}
+		}
+		catch (Throwable t)
+		{
+			this.addErrMessage("Problem processing rec: "+recNumber.toString());
+			this.addErrMessage("Problem processing field: "+fieldNumber.toString());
+			endLoad(recNumber);
+			throw new RuntimeException(t);
+		}
+		endLoad(recNumber);
+	}
+
+	/**
+	 * Look up the setter for the field, then call it with the Object value (which has already been coverted)
+	 * @param name
+	 * @param inValue
+	 */
+	public void setJavaBeanField(String name, String inValue) 
+	{
+		BeanAccessor accessor = schema.getAccessor(name);
+		Object val = convertValue(inValue, -1, name, accessor.getType());
+		boolean set = setValueOf(accessor, val);
+		Integer order = schema.getOrder(name);
+		if (order != null)
+		{
+			// set by hand, a lazy load mustn't put the record's value over it
+			pending.clear(order - 1);
+			nulls.set(order - 1, !set);
+		}
+	}
+	
+	/**
+	 * Load one column the reflective way (for the columns a {@link CompiledCodec} can't do itself)
+	 * @param tokens
+	 * @param column zero based
+	 */
+	void loadColumn(DelimitedTokenizer tokens, int column)
+	{
+		setColumnValue(column, tokens, column);
+	}
+	
+	/**
+	 * Same as {@link #setJavaBeanField(String, String)} but the field is looked up by its position in the record
+	 * @param column zero based column
+	 * @param inValue
+	 */
+	private void setColumnValue(int column, String inValue)
+	{
+		BeanAccessor accessor = schema.getColumnAccessor(column);
+		if (schema.setsFields())
+		{
+			// the subclass does something with the value, so it goes through there like it always has
+			this.setJavaBeanField(accessor.getName(), inValue);
+			return;
+		}
+		Object val = convertValue(inValue, column, accessor.getName(), accessor.getType());
+		if (setValueOf(accessor, val))
+		{
+			nulls.clear(column);
+		}
+	}
+	
+	/**
+	 * Set the field for a column straight from the tokenized record, Strings are only built for String fields
+	 * @param column zero based column
+	 * @param tokens
+	 * @param i the token to use
+	 */
+	private void setColumnValue(int column, DelimitedTokenizer tokens, int i)
+	{
+		BeanAccessor accessor = schema.getColumnAccessor(column);
+		if (schema.setsFields())
+		{
+			this.setJavaBeanField(accessor.getName(), tokens.get(i));
+			return;
+		}
+		Class<?> clzz = accessor.getType();
+		if (accessor.isPrimitive())
+		{
+			if (setPrimitive(accessor, tokens.chars(), tokens.start(i), tokens.end(i), column))
+			{
+				nulls.clear(column);
+			}
+			return;
+		}
+		Object val;
+		if (isConverted(clzz))
+		{
+			val = convertChars(tokens.chars(), tokens.start(i), tokens.end(i), column, accessor.getName(), clzz);
+		}
+		else
+		{
+			val = convertValue(tokens.get(i), column, accessor.getName(), clzz);
+		}
+		if (setValueOf(accessor, val))
+		{
+			nulls.clear(column);
+		}
+	}
+	
+	/**
+	 * Parse the value straight into a primitive field, no wrapper object is created for int, long, double
+	 * or boolean fields
+	 * @return true if the field was set
+	 */
+	private boolean setPrimitive(BeanAccessor accessor, CharSequence chars, int start, int end, int column)
+	{
+		if (valueIsNull(chars, start, end))
+		{
+			return false;
+		}
+		Class<?> clzz = accessor.getType();
+		try
+		{
+			if (clzz == boolean.class)
+			{
+				return accessor.setBoolean(this, parseBoolean(chars, start, end));
+			}
+			if (clzz == int.class || clzz == long.class || clzz == double.class)
+			{
+				NumberParser parser = NumberParser.get();
+				if (!parser.parse(chars, start, end))
+				{
+					valueError(chars, start, end, accessor.getName());
+					return false;
+				}
+				if (clzz == int.class)
+				{
+					return accessor.setInt(this, parser.intValue());
+				}
+				return clzz == long.class ? accessor.setLong(this, parser.longValue()) : accessor.setDouble(this, parser.doubleValue());
+			}
+			return accessor.set(this, convertChars(chars, start, end, column, accessor.getName(), BeanAccessor.wrap(clzz)));
+		}
+		catch (RuntimeException e)
+		{
+			// same as a setter that couldn't be called
+			return false;
+		}
+	}
+	
+	/**
+	 * Convenience method to check of the case of a null field or an empty field
+	 * (added \N as a check, since that is how Hive outputs null values)
+	 * @param value
+	 * @return
+	 */
+	private boolean valueIsNull(String value)
+	{
+	    if (value == null)
+	    {
+	    	return true;
+	    }
+		return valueIsNull(value, 0, value.length());
+	}
+	
+	/**
+	 * Same null check, just done in place on part of a record
+	 */
+	static boolean valueIsNull(CharSequence chars, int start, int end)
+	{
+		for (int i = start; i < end; i++)
+		{
+			char c = chars.charAt(i);
+			if (c == '\\' && i + 1 < end && chars.charAt(i + 1) == 'N')
+			{
+				i++;
+			}
+			else if (c > ' ')
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @param clzz
+	 * @return true if the loader converts Strings to this type
+	 */
+	private static boolean isConverted(Class<?> clzz)
+	{
+		return NumberParser.isNumber(clzz) || clzz == Date.class || clzz == Boolean.class;
+	}
+	
+	/**
+	 * This is where the rubber hits the road... using a String name and a String value
+	 * Convert the string to the correct datatype and call the setter method on the java bean
+	 * 
+	 * <BR> Valid Data Types: Integer, Long, Float, Double, BigDecimal, Date, Boolean, String
+	 * 
+	 * @param value
+	 * @param column zero based column the value came from, -1 if it isn't known
+	 * @param name
+	 * @return converted Object
+	 */
+	private Object convertValue(String value, int column, String name, Class<?> clzz) 
+	{
+		if (clzz == null)
+		{
+			if (!valueIsNull(value))
+			{
+				valueError(value, 0, value.length(), name);
+			}
+			return value;
+		}
+		// primitive fields are set through their wrapper
+		clzz = BeanAccessor.wrap(clzz);
+		if (value == null || !isConverted(clzz))
+		{
+			return value;
+		}
+		Object retObj = convertChars(value, 0, value.length(), column, name, clzz);
+		return retObj == null ? value : retObj;
+	}
+	
+	/**
+	 * Convert part of a record (between start and end) to the type of the field without cutting it out first
+	 * 
+	 * <BR> Valid Data Types: Integer, Long, Float, Double, BigDecimal, Date, Boolean
+	 * 
+	 * @param chars
+	 * @param start
+	 * @param end
+	 * @param column zero based column the value came from, -1 if it isn't known
+	 * @param name
+	 * @param clzz
+	 * @return converted Object, or null if the value was null or couldn't be converted
+	 */
+	Object convertChars(CharSequence chars, int start, int end, int column, String name, Class<?> clzz)
+	{
+		if (valueIsNull(chars, start, end))
+		{
+			return null;
+		}
+		Object retObj = null;
+		if(NumberParser.isNumber(clzz))
+		{
+			NumberParser parser = NumberParser.get();
+			if (parser.parse(chars, start, end))
+			{
+				retObj = parser.valueOf(clzz);
+			}
+		}
+		else if(clzz == Date.class)
+		{
+			retObj = schema.getDateParser().parse(chars, start, end, column);
+		}
+		else if(clzz == Boolean.class)
+		{
+			retObj = parseBoolean(chars, start, end);
+		}
+		if (retObj == null)
+		{
+			valueError(chars, start, end, name);
+		}
+		return retObj;
+	}
+
+	/**
+	 * Convert a "1" or "t/T" to True
+	 * or if it is longer than that use the {@link Boolean#parseBoolean(String)}</pre>
+	 * @param argInput
+	 * @return
+	 */
+	private Boolean parseBoolean(String argInput)
+	{
+		if (argInput == null)
+		{
+			return false;
+		}
+		if(argInput.trim().length() == 1)
+		{
+			String newVal = argInput.trim();
+			return newVal.equalsIgnoreCase("1") || newVal.equalsIgnoreCase("t");
+		}
+		return Boolean.parseBoolean(argInput);
+	}
+	
+	/**
+	 * {@link #parseBoolean(String)} done in place on part of a record
+	 */
+	static Boolean parseBoolean(CharSequence chars, int start, int end)
+	{
+		int s = start;
+		int e = end;
+		while (s < e && chars.charAt(s) <= ' ')
+		{
+			s++;
+		}
+		while (e > s && chars.charAt(e - 1) <= ' ')
+		{
+			e--;
+		}
+		if (e - s == 1)
+		{
+			char c = chars.charAt(s);
+			return c == '1' || c == 't' || c == 'T';
+		}
+		if (end - start != 4)
+		{
+			return false;
+		}
+		String t = "true";
+		for (int i = 0; i < 4; i++)
+		{
+			if (Character.toLowerCase(chars.charAt(start + i)) != t.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+/// ======== OLD INEFFECIENT METHOD ===========
+//	private Object parseDate(String value) throws ParseException 
+//	{
 //		SimpleDateFormat fmt = new SimpleDateFormat(DATE_STRING1);
 //		Date date = null;
 //		try
@@ -720,41 +1546,22 @@ public abstract class BaseJavaBean
 	
 	/**
 	 * attempt to convert the String to a Date format using one of the existin Date Formats
+	 * 
+	 * 1/23/2017:  Updated to allow for the class that is extending this to add additional
+	 *             Date formats.
+	 * (the formats are compiled once per class by a {@link DateParser}, loading a record never throws)
 	 * @param value
 	 * @return
 	 * @throws ParseException
 	 */
 	public Object parseDate(String value) throws ParseException
 	{		
-		return parseDate(value,null,this.dateFormats.toArray(new String[0]));
-	}
-	
-	/**
-	 * Recursively go through all possible date formats until a good one is found
-	 * 
-	 * 1/23/2017:  Updated to allow for the class that is extending this to add additional
-	 *             Date formats.
-	 */
-	private Object parseDate(String value, Integer sub, String[] formats) throws ParseException
-	{
-		if(sub == null)
+		Date date = schema.getDateParser().parse(value);
+		if (date == null)
 		{
-			sub = 0;
-		}
-		if(sub < formats.length)
-		{
-			SimpleDateFormat fmt = new SimpleDateFormat(formats[sub]);
-			try
-			{
-				return fmt.parse(value);
-			}
-			catch(Throwable t)
-			{
-				return parseDate(value,++sub,formats);
-			}
+			throw new ParseException("Unparseable Date --> "+value,0);
 		}
-		
-		throw new ParseException("Unparseable Date --> "+value,0);
+		return date;
 	}
 
 	/**
@@ -763,9 +1570,7 @@ public abstract class BaseJavaBean
 	 */
 	protected Collection<String> getNames()
 	{
-		return beanOrder.entrySet().stream()
-				.sorted(Map.Entry.<String,Integer>comparingByValue())
-				.map(Map.Entry<String,Integer>::getKey).collect(Collectors.toList());
+		return schema.getNames();
 	}
 	
 	
@@ -778,27 +1583,131 @@ public abstract class BaseJavaBean
 	 */
 	public Object getValue(String name)
 	{
-		return getValueFromBean(getGetterName(name));
+		touch(name);
+		BeanAccessor accessor = schema.getAccessor(name);
+		Object value = getValueOf(accessor);
+		if (accessor.isPrimitive() && accessor.isEmpty(value) && isNullColumn(name))
+		{
+			return null;
+		}
+		return value;
+	}
+	
+	/**
+	 * @param name
+	 * @return true if the field has no value (for a primitive field, nothing was loaded into it)
+	 */
+	public boolean isNull(String name)
+	{
+		return getValue(name) == null;
+	}
+	
+	private boolean isNullColumn(String name)
+	{
+		Integer order = schema.getOrder(name);
+		return order != null && nulls.get(order - 1);
+	}
+	
+	/**
+	 * @param column zero based
+	 * @return true if the column didn't get a value from the last load
+	 */
+	boolean isNullColumn(int column)
+	{
+		return nulls.get(column);
+	}
+	
+	/**
+	 * The column got a value (for the generated codecs, which set the fields themselves)
+	 * @param column zero based
+	 */
+	void loaded(int column)
+	{
+		nulls.clear(column);
+	}
+	
+	/**
+	 * Get an int field without boxing it (Integer and the other Number fields work too)
+	 * @param name
+	 * @return the value, 0 if it is null (use {@link #isNull(String)} to tell them apart)
+	 */
+	public int getInt(String name)
+	{
+		touch(name);
+		try
+		{
+			return schema.getAccessor(name).getInt(this);
+		}
+		catch(RuntimeException e)
+		{
+			return 0;
+		}
+	}
+	
+	/**
+	 * Get a long field without boxing it (Long and the other Number fields work too)
+	 * @param name
+	 * @return the value, 0 if it is null (use {@link #isNull(String)} to tell them apart)
+	 */
+	public long getLong(String name)
+	{
+		touch(name);
+		try
+		{
+			return schema.getAccessor(name).getLong(this);
+		}
+		catch(RuntimeException e)
+		{
+			return 0;
+		}
+	}
+	
+	/**
+	 * Get a double field without boxing it (Double and the other Number fields work too)
+	 * @param name
+	 * @return the value, 0 if it is null (use {@link #isNull(String)} to tell them apart)
+	 */
+	public double getDouble(String name)
+	{
+		touch(name);
+		try
+		{
+			return schema.getAccessor(name).getDouble(this);
+		}
+		catch(RuntimeException e)
+		{
+			return 0;
+		}
 	}
 	
     public Integer getIntValue(String name)
     {
-    	return (Integer) getValueFromBean(getGetterName(name));
+    	return (Integer) getValue(name);
     }
     
     public Double getDblValue(String name)
     {
-    	return (Double) getValueFromBean(getGetterName(name));
+    	return (Double) getValue(name);
+    }
+    
+    public Long getLongValue(String name)
+    {
+    	return (Long) getValue(name);
+    }
+    
+    public BigDecimal getBigDecimalValue(String name)
+    {
+    	return (BigDecimal) getValue(name);
     }
 	
     public Boolean getBoolValue(String name)
     {
-    	return (Boolean) getValueFromBean(getGetterName(name));
+    	return (Boolean) getValue(name);
     }
     
     public Date getDateValue(String name)
     {
-    	return (Date) getValueFromBean(getGetterName(name));
+    	return (Date) getValue(name);
     }
 	
 	/**
@@ -809,7 +1718,7 @@ public abstract class BaseJavaBean
 	 */
 	public String getStringValue(String name)
 	{		
-		Class<?> clzz = classMap.getOrDefault(name, this.getClassForName_noExcp(name));
+		Class<?> clzz = schema.getClassForName(name);
 		if(clzz == Date.class)
 		{
 			return this.getDateString(name);
@@ -827,16 +1736,8 @@ public abstract class BaseJavaBean
 	 */
 	public Class<?> getClassForName_noExcp(String name)
 	{
-		try
-		{
-			return getClassForName(name);
-		}
-		catch (Exception e)
-		{
-			// purposely not handling the exception
-			e.printStackTrace();
-		}
-		return null;
+		// no exception (or stack trace) for a name that isn't there, it's just null
+		return schema.getClassForName(name);
 	}
 	
 	/**
@@ -847,26 +1748,12 @@ public abstract class BaseJavaBean
 	 */
 	public Class<?> getClassForName(String name) throws Exception
 	{
-		Class <?> clzz = null;
-		if (this.classMap.containsKey(name))
+		Class <?> clzz = schema.getClassForName(name);
+		if (clzz == null)
 		{
-			return this.classMap.get(name);
+			throw new Exception("No field exists by that name: "+name);
 		}
-		else
-		{
-			try {
-
-				Class<BaseJavaBean> baseClass = this.getJavaBeanClass();
-				Field field = baseClass.getDeclaredField(name);
-				clzz = field.getType();
-				this.classMap.put(name, clzz);
-			} catch (NoSuchFieldException e) {
-				throw new Exception("No field exists by that name: "+name, e);
-			} catch (SecurityException e) {
-				throw new Exception("Security Error: No access granted to look up field: "+name, e);
-			}
-			return clzz;
-		}		
+		return clzz;
 	}
 	
 	/**
@@ -876,7 +1763,18 @@ public abstract class BaseJavaBean
 	 */
 	public String getDateString(String name)
 	{
-		return getDateString(name, this.dateOutput);
+		Integer order = schema.getOrder(name);
+		return getDateString(name, order == null ? this.dateOutput : dateOutput(order - 1));
+	}
+	
+	/**
+	 * @param column zero based
+	 * @return the format a date column is written out in, the {@link Column#format()} if it has one
+	 */
+	String dateOutput(int column)
+	{
+		String format = schema.getColumnFormat(column);
+		return format == null ? this.dateOutput : format;
 	}
 	
 	/**
@@ -915,30 +1813,21 @@ public abstract class BaseJavaBean
 			return "null";
 		}
 		Date dateVal = (Date)val;
-		SimpleDateFormat format = new SimpleDateFormat(dateFormat);
-		return format.format(dateVal);
+		return DateFormatter.forPattern(dateFormat).format(dateVal);
 		
 	}
 	
 	/**
-	 * Pass in the getter Method name and call it using Reflection
+	 * Pass in the getter Method name and call it
+	 * (the method is looked up once per class and cached in the {@link BeanSchema})
 	 * 
 	 * @param getter
 	 * @return
 	 */
 	protected Object getValueFromBean(String getter) 
 	{
-		Object val = null;
-		try
-		{
-			Method meth = this.getClass().getMethod(getter, new Class<?>[0]);
-			val = meth.invoke(this, new Object[0]);
-		}
-		catch(Throwable t)
-		{
-			//
-		}
-		return val;
+		materialize();
+		return getValueOf(schema.getMethodAccessor(getter));
 	}
 	
 	/**
@@ -947,54 +1836,36 @@ public abstract class BaseJavaBean
 	 * @param value
 	 */
 	protected void setValueOfBean(String setter, Object value)
+	{
+		setValueOf(schema.getMethodAccessor(setter), value);
+	}
+	
+	private Object getValueOf(BeanAccessor accessor)
 	{
 		try
 		{
-			Method meth = this.getClass().getMethod(setter, new Class<?>[]{value.getClass()});
-			meth.invoke(this, new Object[]{value});
+			return accessor.get(this);
 		}
-		catch(Throwable t)
+		catch(RuntimeException e)
 		{
-			//t.printStackTrace();
+			return null;
 		}
 	}
-
-	/**
-	 * Using the name of the variable pass back the getter method name
-	 * @param beanName
-	 * @return
-	 */
-	private String getGetterName(String beanName) 
-	{
-		String name = "get" + beanName.substring(0, 1).toUpperCase() + beanName.substring(1);
-		try {
-			Class<?> clzz = this.getClassForName(beanName);
-			if(clzz.equals(boolean.class))
-			{
-				name = "is" + beanName.substring(0, 1).toUpperCase() + beanName.substring(1);
-			}
-			
-		} catch (Exception e) {
-			//Do Nothing
-		} 
-		
-		
-		return name;
-	}
 	
-	/** 
-	 * Using the variable name pass the setter method name
-	 * @param beanName
-	 * @return
+	/**
+	 * @return true if the setter was called
 	 */
-	private String getSetterName(String beanName) 
+	private boolean setValueOf(BeanAccessor accessor, Object value)
 	{
-		if(beanName == null)
+		try
+		{
+			return accessor.set(this, value);
+		}
+		catch(RuntimeException e)
 		{
-			this.addInfoMessage("WHAT????");
+			//e.printStackTrace();
+			return false;
 		}
-		String name = "set" + beanName.substring(0, 1).toUpperCase() + beanName.substring(1);
-		return name;
 	}
 	
 	/**
@@ -1055,21 +1926,89 @@ public abstract class BaseJavaBean
 		return createCSV(false,false,list);
 	}
 	
-	public List<String> getFields(boolean includeSkipFields)
+	/**
+	 * Same record as {@link #createHDFSRecord(boolean)}, put in the Text passed in (a mapper or reducer can keep
+	 * one Text for its output instead of making a String and a Text for every record)
+	 * @param includeSkipFields
+	 * @param text cleared first
+	 * @return the text
+	 */
+	public Text createHDFSRecord(boolean includeSkipFields, Text text)
+	{
+		text.clear();
+		this.appendTo(text, includeSkipFields);
+		return text;
+	}
+	
+	/**
+	 * Write the record (no line separator) to the end of out, like {@link #createHDFSRecord(boolean)} but without
+	 * making a String of it first
+	 * @param out
+	 * @param includeSkipFields
+	 * @throws IOException
+	 */
+	public void appendTo(Appendable out, boolean includeSkipFields) throws IOException
 	{
-		List<String> list = this.fieldList;
-		if (!includeSkipFields)
+		List<String> fields = this.getFields(includeSkipFields);
+		if (out instanceof StringBuilder)
 		{
-			list = new ArrayList<String>();
-			for (String field: fieldList)
-			{
-				if (!skipList.contains(field))
-				{
-					list.add(field);
-				}
-			}
+			appendCSV((StringBuilder) out, false, fields);
+			return;
+		}
+		RecordBuffer buffer = RecordBuffer.acquire();
+		try
+		{
+			appendCSV(buffer.chars(), false, fields);
+			buffer.writeTo(out);
+		}
+		finally
+		{
+			buffer.release();
+		}
+	}
+	
+	/**
+	 * Write the record (no line separator) to the end of the text, UTF-8 encoded
+	 * @param text
+	 * @param includeSkipFields
+	 */
+	public void appendTo(Text text, boolean includeSkipFields)
+	{
+		RecordBuffer buffer = RecordBuffer.acquire();
+		try
+		{
+			appendCSV(buffer.chars(), false, this.getFields(includeSkipFields));
+			buffer.writeTo(text);
+		}
+		finally
+		{
+			buffer.release();
 		}
-		return list;
+	}
+	
+	/**
+	 * Write the record (no line separator) into the buffer at its position, UTF-8 encoded
+	 * @param out
+	 * @param includeSkipFields
+	 * @throws java.nio.BufferOverflowException if it doesn't fit (nothing is written)
+	 */
+	public void appendTo(ByteBuffer out, boolean includeSkipFields)
+	{
+		RecordBuffer buffer = RecordBuffer.acquire();
+		try
+		{
+			appendCSV(buffer.chars(), false, this.getFields(includeSkipFields));
+			buffer.writeTo(out);
+		}
+		finally
+		{
+			buffer.release();
+		}
+	}
+	
+	public List<String> getFields(boolean includeSkipFields)
+	{
+		return schema.getFields(includeSkipFields);
 	}
 	
 	/**
@@ -1092,7 +2031,7 @@ public abstract class BaseJavaBean
 	
 	public String createCSV(boolean header, boolean lineSeperator)
 	{
-		return this.createCSV(header, lineSeperator, this.fieldList);
+		return this.createCSV(header, lineSeperator, schema.getFields(true));
 	}
 	/**
 	 * Convert the fields to a record using the Out Delimitter
@@ -1101,45 +2040,59 @@ public abstract class BaseJavaBean
 	 */
 	public String createCSV(boolean header, boolean lineSeperator, List<String> fields)
 	{
-		StringBuffer sb = new StringBuffer();
+		StringBuilder sb = new StringBuilder();
+		appendCSV(sb, header, fields);
+		if (lineSeperator)
+		{
+			sb.append(System.getProperty("line.separator"));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Write the record (or the header) to the end of the buffer, see {@link #createCSV(boolean, boolean, List)}
+	 */
+	private void appendCSV(StringBuilder sb, boolean header, List<String> fields)
+	{
+		BeanCodec<BaseJavaBean> codec = header || !pending.isEmpty() ? null : schema.getCodec();
+		if (codec != null && (fields == schema.getFields(true) || fields == schema.getFields(false)))
+		{
+			int start = sb.length();
+			try
+			{
+				codec.appendTo(this, sb, this.getOutDelimiter(), fields == schema.getFields(true));
+				return;
+			}
+			catch (RuntimeException e)
+			{
+				// a getter blew up, the old way treats that as a null
+				sb.setLength(start);
+			}
+		}
+		String delimiter = this.getOutDelimiter();
 		boolean first = true;
 		for(String field:fields)
 		{
 			if(!first)
 			{
-				sb.append(this.getOutDelimiter());
+				sb.append(delimiter);
 			}
 			first = false;
-			String value = "";
 			if(header)
 			{
-				value = field;
+				sb.append(field);
+				continue;
 			}
-			else
+			// never looked at since a lazy load, so it goes out just like it came in
+			String raw = pending.isEmpty() ? null : untouchedValue(field);
+			if (raw != null)
 			{
-				value = getStringValue(field);
-				if("true".equalsIgnoreCase(value))
-				{
-					value = "1";
-				}
-				if("false".equalsIgnoreCase(value))
-				{
-					value = "0";
-				}
-				if(value.indexOf(String.valueOf(this.getOutDelimiter()))>0)
-				{
-					value = "\""+value+"\"";
-				}
+				sb.append(raw);
+				continue;
 			}
-			sb.append(value);
-		}
-		
-		if (lineSeperator)
-		{
-			sb.append(System.getProperty("line.separator"));
+			// 1/0 for true/false, and quotes if the delimiter is in it
+			BeanCodecs.appendValue(sb, getStringValue(field), delimiter);
 		}
-		
-		return sb.toString();
 	}
 	
 	/**
@@ -1149,20 +2102,16 @@ public abstract class BaseJavaBean
 	 */
 	public String[] splitCsvString(String inputLine)
 	{
-		if(inputLine.trim().equalsIgnoreCase(""))
+		DelimitedTokenizer tokens = DelimitedTokenizer.acquire(this.getDelimiter());
+		try
 		{
-			return new String[0];
+			tokens.tokenize(inputLine);
+			return tokens.toArray();
 		}
-		String newLine = searchOutAndRemoveCommas(inputLine);
-		String[] out = newLine.split(this.getDelimiter());
-		List<String> outList = new ArrayList<String>();
-		
-		for(String input:out)
+		finally
 		{
-			outList.add(removeQuotes(input,this.getDelimiter()));
+			tokens.release();
 		}
-		
-		return outList.toArray(new String[0]);
 	}
 	
 	/*         THIS IS THE FIELD THAT WILL BE PUT INTO PLACE OF THE DELIMITER     */
@@ -1177,7 +2126,9 @@ public abstract class BaseJavaBean
 	 * 
 	 * @param inputLine
 	 * @return
+	 * @deprecated {@link #splitCsvString(String)} uses the {@link DelimitedTokenizer} now, which handles the quotes itself
 	 */
+	@Deprecated
 	protected String searchOutAndRemoveCommas(String inputLine) 
 	{
 		String delim = this.getDelimiter();
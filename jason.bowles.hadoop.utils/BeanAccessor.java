@@ -0,0 +1,585 @@
+package jason.bowles.hadoop.utils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * The getter and setter for one field of a {@link BaseJavaBean}, looked up once per class instead of
+ * once per call.
+ *
+ * <p> The methods are bound to a {@link Function} / {@link BiConsumer} with {@link LambdaMetafactory}, so
+ * calling them costs about the same as calling the getter or setter directly.  If the methods can't be
+ * bound that way (the class isn't public or comes from a class loader we can't see), a cached
+ * {@link MethodHandle} is used instead.
+ *
+ * <p> Fields declared as int, long, double or boolean also get their getter and setter bound to the primitive
+ * functional interfaces ({@link ToIntFunction}, {@link ObjIntConsumer}...), so {@link #getInt(Object)} and
+ * {@link #setInt(Object, int)} never box the value.
+ *
+ * <p> Instances are immutable and are shared through the {@link BeanSchema}.
+ *
+ * @author id19868
+ */
+public final class BeanAccessor
+{
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private final String name;
+	private final Class<?> type;
+	private final Class<?> setterType;
+	// what the field gets set to when it is cleared (null, or 0/false for primitives)
+	private final Object empty;
+	private final Function<Object,Object> getter;
+	private final BiConsumer<Object,Object> setter;
+
+	// only bound when the getter returns / the setter takes that primitive
+	private final ToIntFunction<Object> intGetter;
+	private final ToLongFunction<Object> longGetter;
+	private final ToDoubleFunction<Object> doubleGetter;
+	private final Predicate<Object> booleanGetter;
+	private final ObjIntConsumer<Object> intSetter;
+	private final ObjLongConsumer<Object> longSetter;
+	private final ObjDoubleConsumer<Object> doubleSetter;
+	private final BooleanSetter booleanSetter;
+
+	/**
+	 * There is no ObjBooleanConsumer in java.util.function
+	 */
+	interface BooleanSetter
+	{
+		void accept(Object bean, boolean value);
+	}
+
+	@SuppressWarnings("unchecked")
+	private BeanAccessor(String name, Class<?> type, Method getter, Method setter)
+	{
+		this.name = name;
+		this.type = type;
+		this.getter = getter == null ? null : bindGetter(getter);
+		this.setterType = setter == null ? null : wrap(setter.getParameterTypes()[0]);
+		this.empty = setter == null ? null : emptyValue(setter.getParameterTypes()[0]);
+		this.setter = setter == null ? null : bindSetter(setter);
+
+		Class<?> returns = getter == null ? null : getter.getReturnType();
+		this.intGetter = (ToIntFunction<Object>) bindPrimitive(getter, returns == int.class, ToIntFunction.class, "applyAsInt");
+		this.longGetter = (ToLongFunction<Object>) bindPrimitive(getter, returns == long.class, ToLongFunction.class, "applyAsLong");
+		this.doubleGetter = (ToDoubleFunction<Object>) bindPrimitive(getter, returns == double.class, ToDoubleFunction.class, "applyAsDouble");
+		this.booleanGetter = (Predicate<Object>) bindPrimitive(getter, returns == boolean.class, Predicate.class, "test");
+		Class<?> takes = setter == null ? null : setter.getParameterTypes()[0];
+		this.intSetter = (ObjIntConsumer<Object>) bindPrimitive(setter, takes == int.class, ObjIntConsumer.class, "accept");
+		this.longSetter = (ObjLongConsumer<Object>) bindPrimitive(setter, takes == long.class, ObjLongConsumer.class, "accept");
+		this.doubleSetter = (ObjDoubleConsumer<Object>) bindPrimitive(setter, takes == double.class, ObjDoubleConsumer.class, "accept");
+		this.booleanSetter = (BooleanSetter) bindPrimitive(setter, takes == boolean.class, BooleanSetter.class, "accept");
+	}
+
+	/**
+	 * Look up the getter and setter of a field on the class passed in (following java naming conventions)
+	 * @param beanClass the class to look up the methods on
+	 * @param name the field name
+	 * @param type the declared type of the field, null if it isn't known
+	 * @return
+	 */
+	static BeanAccessor forField(Class<?> beanClass, String name, Class<?> type)
+	{
+		return new BeanAccessor(name, type, findGetter(beanClass, name, type), findSetter(beanClass, getSetterName(name), type));
+	}
+
+	/**
+	 * Bind a getter by its method name, this is for the callers that build the getter name themselves
+	 * @param beanClass
+	 * @param getterName
+	 * @return
+	 */
+	static BeanAccessor forGetter(Class<?> beanClass, String getterName)
+	{
+		return new BeanAccessor(getterName, null, findMethod(beanClass, getterName), null);
+	}
+
+	/**
+	 * Bind a setter by its method name, this is for the callers that build the setter name themselves
+	 * @param beanClass
+	 * @param setterName
+	 * @return
+	 */
+	static BeanAccessor forSetter(Class<?> beanClass, String setterName)
+	{
+		return new BeanAccessor(setterName, null, null, findSetter(beanClass, setterName, null));
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return the declared type of the field, or null if it isn't known
+	 */
+	public Class<?> getType()
+	{
+		return type;
+	}
+
+	public boolean canGet()
+	{
+		return getter != null;
+	}
+
+	public boolean canSet()
+	{
+		return setter != null;
+	}
+
+	/**
+	 * Call the getter
+	 * @param bean
+	 * @return the value, or null if there isn't a getter
+	 */
+	public Object get(Object bean)
+	{
+		return getter == null ? null : getter.apply(bean);
+	}
+
+	/**
+	 * Call the setter, but only if the value fits the setter (a String that couldn't be converted to an
+	 * Integer is just ignored, like it always has been)
+	 * @param bean
+	 * @param value
+	 * @return true if the setter was called
+	 */
+	public boolean set(Object bean, Object value)
+	{
+		if (setter == null || value == null || !setterType.isInstance(value))
+		{
+			return false;
+		}
+		setter.accept(bean, value);
+		return true;
+	}
+
+	/**
+	 * @return true if the field is declared as a primitive
+	 */
+	public boolean isPrimitive()
+	{
+		return type != null && type.isPrimitive();
+	}
+
+	/**
+	 * @param value
+	 * @return true if the value is what {@link #clear(Object)} sets the field to
+	 */
+	public boolean isEmpty(Object value)
+	{
+		return value == null || value.equals(empty);
+	}
+
+	/**
+	 * Call the getter without boxing (if the field is an int)
+	 * @param bean
+	 * @return the value, 0 if there isn't one
+	 */
+	public int getInt(Object bean)
+	{
+		if (intGetter != null)
+		{
+			return intGetter.applyAsInt(bean);
+		}
+		Object value = get(bean);
+		return value instanceof Number ? ((Number) value).intValue() : 0;
+	}
+
+	/**
+	 * Call the getter without boxing (if the field is a long)
+	 * @param bean
+	 * @return the value, 0 if there isn't one
+	 */
+	public long getLong(Object bean)
+	{
+		if (longGetter != null)
+		{
+			return longGetter.applyAsLong(bean);
+		}
+		Object value = get(bean);
+		return value instanceof Number ? ((Number) value).longValue() : 0;
+	}
+
+	/**
+	 * Call the getter without boxing (if the field is a double)
+	 * @param bean
+	 * @return the value, 0 if there isn't one
+	 */
+	public double getDouble(Object bean)
+	{
+		if (doubleGetter != null)
+		{
+			return doubleGetter.applyAsDouble(bean);
+		}
+		Object value = get(bean);
+		return value instanceof Number ? ((Number) value).doubleValue() : 0;
+	}
+
+	/**
+	 * Call the getter without boxing (if the field is a boolean)
+	 * @param bean
+	 * @return the value, false if there isn't one
+	 */
+	public boolean getBoolean(Object bean)
+	{
+		if (booleanGetter != null)
+		{
+			return booleanGetter.test(bean);
+		}
+		return Boolean.TRUE.equals(get(bean));
+	}
+
+	/**
+	 * Call the setter without boxing (if the field is an int)
+	 * @param bean
+	 * @param value
+	 * @return true if the setter was called
+	 */
+	public boolean setInt(Object bean, int value)
+	{
+		if (intSetter != null)
+		{
+			intSetter.accept(bean, value);
+			return true;
+		}
+		return set(bean, Integer.valueOf(value));
+	}
+
+	/**
+	 * Call the setter without boxing (if the field is a long)
+	 * @param bean
+	 * @param value
+	 * @return true if the setter was called
+	 */
+	public boolean setLong(Object bean, long value)
+	{
+		if (longSetter != null)
+		{
+			longSetter.accept(bean, value);
+			return true;
+		}
+		return set(bean, Long.valueOf(value));
+	}
+
+	/**
+	 * Call the setter without boxing (if the field is a double)
+	 * @param bean
+	 * @param value
+	 * @return true if the setter was called
+	 */
+	public boolean setDouble(Object bean, double value)
+	{
+		if (doubleSetter != null)
+		{
+			doubleSetter.accept(bean, value);
+			return true;
+		}
+		return set(bean, Double.valueOf(value));
+	}
+
+	/**
+	 * Call the setter without boxing (if the field is a boolean)
+	 * @param bean
+	 * @param value
+	 * @return true if the setter was called
+	 */
+	public boolean setBoolean(Object bean, boolean value)
+	{
+		if (booleanSetter != null)
+		{
+			booleanSetter.accept(bean, value);
+			return true;
+		}
+		return set(bean, Boolean.valueOf(value));
+	}
+
+	/**
+	 * Set the field back to null (or 0/false if it is a primitive)
+	 * @param bean
+	 */
+	public void clear(Object bean)
+	{
+		if (setter != null)
+		{
+			setter.accept(bean, empty);
+		}
+	}
+
+	static String getGetterName(String beanName, Class<?> type)
+	{
+		String prefix = boolean.class.equals(type) ? "is" : "get";
+		return prefix + capitalize(beanName);
+	}
+
+	static String getSetterName(String beanName)
+	{
+		return "set" + capitalize(beanName);
+	}
+
+	private static String capitalize(String beanName)
+	{
+		return beanName.substring(0, 1).toUpperCase() + beanName.substring(1);
+	}
+
+	private static Method findGetter(Class<?> beanClass, String name, Class<?> type)
+	{
+		Method meth = findMethod(beanClass, getGetterName(name, type));
+		if (meth == null && boolean.class.equals(type))
+		{
+			meth = findMethod(beanClass, "get" + capitalize(name));
+		}
+		return meth;
+	}
+
+	private static Method findMethod(Class<?> beanClass, String methodName)
+	{
+		try
+		{
+			return beanClass.getMethod(methodName);
+		}
+		catch (NoSuchMethodException | SecurityException e)
+		{
+			return null;
+		}
+	}
+
+	private static Method findSetter(Class<?> beanClass, String setterName, Class<?> type)
+	{
+		if (type != null)
+		{
+			try
+			{
+				return beanClass.getMethod(setterName, type);
+			}
+			catch (NoSuchMethodException | SecurityException e)
+			{
+				return null;
+			}
+		}
+		// don't know the type, so take the first single argument method by that name
+		for (Method meth: beanClass.getMethods())
+		{
+			if (meth.getName().equals(setterName) && meth.getParameterCount() == 1)
+			{
+				return meth;
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Function<Object,Object> bindGetter(Method meth)
+	{
+		MethodHandle handle = unreflect(meth);
+		if (canSpin(meth))
+		{
+			try
+			{
+				CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+						MethodType.methodType(Function.class),
+						MethodType.methodType(Object.class, Object.class),
+						handle,
+						MethodType.methodType(wrap(meth.getReturnType()), meth.getDeclaringClass()));
+				return (Function<Object,Object>) site.getTarget().invokeExact();
+			}
+			catch (Throwable t)
+			{
+				// fall back to the method handle
+			}
+		}
+		MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+		return bean -> {
+			try
+			{
+				return generic.invokeExact(bean);
+			}
+			catch (RuntimeException | Error e)
+			{
+				throw e;
+			}
+			catch (Throwable t)
+			{
+				throw new RuntimeException(t);
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Object,Object> bindSetter(Method meth)
+	{
+		MethodHandle handle = unreflect(meth);
+		if (canSpin(meth))
+		{
+			try
+			{
+				CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+						MethodType.methodType(BiConsumer.class),
+						MethodType.methodType(void.class, Object.class, Object.class),
+						handle,
+						MethodType.methodType(void.class, meth.getDeclaringClass(), wrap(meth.getParameterTypes()[0])));
+				return (BiConsumer<Object,Object>) site.getTarget().invokeExact();
+			}
+			catch (Throwable t)
+			{
+				// fall back to the method handle
+			}
+		}
+		MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		return (bean, value) -> {
+			try
+			{
+				generic.invokeExact(bean, value);
+			}
+			catch (RuntimeException | Error e)
+			{
+				throw e;
+			}
+			catch (Throwable t)
+			{
+				throw new RuntimeException(t);
+			}
+		};
+	}
+
+	/**
+	 * Bind the method to one of the primitive functional interfaces, only with {@link LambdaMetafactory}
+	 * (if that doesn't work the boxed getter / setter is used instead)
+	 * @param meth
+	 * @param fits false if the method doesn't have the right primitive type
+	 * @param iface
+	 * @param samName
+	 * @return null if it can't be bound
+	 */
+	private static Object bindPrimitive(Method meth, boolean fits, Class<?> iface, String samName)
+	{
+		if (meth == null || !fits || !canSpin(meth))
+		{
+			return null;
+		}
+		MethodType instantiated = MethodType.methodType(meth.getReturnType(), meth.getDeclaringClass(), meth.getParameterTypes());
+		MethodType erased = instantiated.changeParameterType(0, Object.class);
+		try
+		{
+			CallSite site = LambdaMetafactory.metafactory(LOOKUP, samName,
+					MethodType.methodType(iface),
+					erased,
+					unreflect(meth),
+					instantiated);
+			return site.getTarget().invoke();
+		}
+		catch (Throwable t)
+		{
+			return null;
+		}
+	}
+
+	private static MethodHandle unreflect(Method meth)
+	{
+		try
+		{
+			return LOOKUP.unreflect(meth);
+		}
+		catch (IllegalAccessException e)
+		{
+			try
+			{
+				meth.setAccessible(true);
+				return LOOKUP.unreflect(meth);
+			}
+			catch (IllegalAccessException | SecurityException e1)
+			{
+				throw new IllegalStateException("Can't access " + meth, e1);
+			}
+		}
+	}
+
+	/**
+	 * The generated lambda class lives next to this class, so it can only call methods it could call itself
+	 */
+	private static boolean canSpin(Method meth)
+	{
+		Class<?> declaring = meth.getDeclaringClass();
+		if (!Modifier.isPublic(declaring.getModifiers()) || !Modifier.isPublic(meth.getModifiers()))
+		{
+			return false;
+		}
+		for (Class<?> clzz: meth.getParameterTypes())
+		{
+			if (!isVisible(clzz))
+			{
+				return false;
+			}
+		}
+		return isVisible(declaring) && isVisible(meth.getReturnType());
+	}
+
+	private static boolean isVisible(Class<?> clzz)
+	{
+		while (clzz.isArray())
+		{
+			clzz = clzz.getComponentType();
+		}
+		if (clzz.isPrimitive())
+		{
+			return true;
+		}
+		try
+		{
+			return Class.forName(clzz.getName(), false, BeanAccessor.class.getClassLoader()) == clzz;
+		}
+		catch (ClassNotFoundException | LinkageError e)
+		{
+			return false;
+		}
+	}
+
+	private static Object emptyValue(Class<?> clzz)
+	{
+		if (!clzz.isPrimitive())
+		{
+			return null;
+		}
+		if (clzz == boolean.class) return Boolean.FALSE;
+		if (clzz == char.class) return Character.valueOf((char) 0);
+		if (clzz == long.class) return Long.valueOf(0);
+		if (clzz == double.class) return Double.valueOf(0);
+		if (clzz == float.class) return Float.valueOf(0);
+		if (clzz == short.class) return Short.valueOf((short) 0);
+		if (clzz == byte.class) return Byte.valueOf((byte) 0);
+		return Integer.valueOf(0);
+	}
+
+	static Class<?> wrap(Class<?> clzz)
+	{
+		if (!clzz.isPrimitive())
+		{
+			return clzz;
+		}
+		if (clzz == int.class) return Integer.class;
+		if (clzz == long.class) return Long.class;
+		if (clzz == double.class) return Double.class;
+		if (clzz == float.class) return Float.class;
+		if (clzz == boolean.class) return Boolean.class;
+		if (clzz == short.class) return Short.class;
+		if (clzz == byte.class) return Byte.class;
+		if (clzz == char.class) return Character.class;
+		return Void.class;
+	}
+}
@@ -0,0 +1,64 @@
+package jason.bowles.hadoop.utils;
+
+/**
+ * Straight-line load / write / key code for one {@link BeanRecord} bean class, generated by
+ * {@link BeanCodecProcessor}.  Every field is read and set with a plain getter / setter call, no names are
+ * looked up and nothing goes through reflection.
+ *
+ * <p> Codecs hold no state, one instance is shared by every bean and thread ({@link BeanCodecs#forClass(Class)}).
+ *
+ * @author id19868
+ * @param <T> the bean class
+ */
+public interface BeanCodec<T extends BaseJavaBean>
+{
+	Class<T> getBeanClass();
+
+	/**
+	 * @return the field names by column (zero based), skipped columns included
+	 */
+	String[] getColumns();
+
+	/**
+	 * @param column zero based
+	 * @return true if the column isn't loaded
+	 */
+	boolean isSkipped(int column);
+
+	/**
+	 * @return the fields from {@link BeanRecord#key()}
+	 */
+	String[] getKeyFields();
+
+	/**
+	 * Set the fields of a freshly reset bean from a tokenized record
+	 * @param bean
+	 * @param tokens
+	 */
+	void parse(T bean, DelimitedTokenizer tokens);
+
+	/**
+	 * Write the fields out the way {@link BaseJavaBean#createCSV(boolean, boolean, java.util.List)} does
+	 * @param bean
+	 * @param sb
+	 * @param delimiter
+	 * @param includeSkipFields
+	 */
+	void appendTo(T bean, StringBuilder sb, String delimiter, boolean includeSkipFields);
+
+	/**
+	 * Write the key fields out the way {@link BaseJavaBean#createKey()} does
+	 * @param bean
+	 * @param sb
+	 * @param delimiter
+	 */
+	void appendKey(T bean, StringBuilder sb, String delimiter);
+
+	/**
+	 * Compare two beans by their key fields (all of the loaded fields if there is no key), nulls first
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	int compare(T a, T b);
+}
@@ -0,0 +1,445 @@
+package jason.bowles.hadoop.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Writes a {@link BeanCodec} for every {@link BeanRecord} class at compile time.
+ * <pre>
+ * javac -processor jason.bowles.hadoop.utils.BeanCodecProcessor -cp hadoop-utils.jar:... MyBean.java
+ * </pre>
+ * The codec for MyBean is MyBeanCodec in the same package.  Its parse, appendTo, appendKey and compare are
+ * one plain getter / setter call per field, in column order, so there is nothing left to look up at runtime.
+ *
+ * <p> Fields can be String, Integer, Long, Double, Float, BigDecimal, Boolean, Date, int, long, double, float or
+ * boolean, and need a public getter and setter.  Anything else is a compile error, a bean like that has to stay
+ * on {@link BaseJavaBean#getLoadFields()}.
+ *
+ * @author id19868
+ */
+@SupportedAnnotationTypes({ "jason.bowles.hadoop.utils.BeanRecord", "jason.bowles.hadoop.utils.Column" })
+public class BeanCodecProcessor extends AbstractProcessor
+{
+	/**
+	 * What the generated code does for each type of field
+	 */
+	private enum Kind
+	{
+		STRING("java.lang.String", null, null),
+		INTEGER("java.lang.Integer", "toInteger", null),
+		LONG("java.lang.Long", "toLong", null),
+		DOUBLE("java.lang.Double", "toDouble", null),
+		FLOAT("java.lang.Float", "toFloat", null),
+		BIG_DECIMAL("java.math.BigDecimal", "toBigDecimal", null),
+		BOOLEAN("java.lang.Boolean", "toBoolean", null),
+		DATE("java.util.Date", "toDate", "appendDate"),
+		INT("int", "intValue", "appendInt"),
+		LONG_PRIMITIVE("long", "longValue", "appendLong"),
+		DOUBLE_PRIMITIVE("double", "doubleValue", "appendDouble"),
+		FLOAT_PRIMITIVE("float", "floatValue", "appendFloat"),
+		BOOLEAN_PRIMITIVE("boolean", null, "appendBoolean");
+
+		final String typeName;
+		// BeanCodecs.toX for objects, the NumberParser method for primitives
+		final String convert;
+		// the BeanCodecs method that needs the bean and column, null for a plain appendValue
+		final String append;
+
+		Kind(String typeName, String convert, String append)
+		{
+			this.typeName = typeName;
+			this.convert = convert;
+			this.append = append;
+		}
+
+		static Kind of(TypeMirror type)
+		{
+			for (Kind kind: values())
+			{
+				if (kind.typeName.equals(type.toString()))
+				{
+					return kind;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * One annotated field
+	 */
+	private static final class Col
+	{
+		String name;
+		int order;
+		boolean skip;
+		Kind kind;
+		String getter;
+		String setter;
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+	{
+		for (Element element: roundEnv.getElementsAnnotatedWith(BeanRecord.class))
+		{
+			if (element.getKind() == ElementKind.CLASS)
+			{
+				generate((TypeElement) element);
+			}
+			else
+			{
+				error(element, "@BeanRecord only goes on a class");
+			}
+		}
+		for (Element element: roundEnv.getElementsAnnotatedWith(Column.class))
+		{
+			if (element.getEnclosingElement().getAnnotation(BeanRecord.class) == null)
+			{
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+						"@Column is only read on a @BeanRecord class, this one is loaded by getLoadFields()", element);
+			}
+		}
+		return true;
+	}
+
+	private void generate(TypeElement type)
+	{
+		TypeElement base = processingEnv.getElementUtils().getTypeElement(BaseJavaBean.class.getName());
+		if (!processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(type.asType()), base.asType()))
+		{
+			error(type, "@BeanRecord class has to extend BaseJavaBean");
+			return;
+		}
+		List<Col> cols = columns(type);
+		if (cols == null)
+		{
+			return;
+		}
+		List<Col> key = new ArrayList<Col>();
+		for (String name: type.getAnnotation(BeanRecord.class).key())
+		{
+			Col col = find(cols, name);
+			if (col == null)
+			{
+				error(type, "Key field " + name + " isn't a @Column");
+				return;
+			}
+			key.add(col);
+		}
+
+		String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String codecName = BeanCodecs.codecName(binaryName);
+		String simpleName = codecName.substring(codecName.lastIndexOf('.') + 1);
+		String beanName = type.getQualifiedName().toString();
+		try (Writer out = processingEnv.getFiler().createSourceFile(codecName, type).openWriter())
+		{
+			out.write(source(pkg, simpleName, beanName, cols, key));
+		}
+		catch (IOException e)
+		{
+			error(type, "Couldn't write " + codecName + ": " + e);
+		}
+	}
+
+	/**
+	 * @return the @Column fields in column order, null if there was something wrong with them
+	 */
+	private List<Col> columns(TypeElement type)
+	{
+		List<Col> cols = new ArrayList<Col>();
+		Set<Integer> orders = new HashSet<Integer>();
+		boolean ok = true;
+		for (Element member: type.getEnclosedElements())
+		{
+			Column column = member.getAnnotation(Column.class);
+			if (column == null || member.getKind() != ElementKind.FIELD)
+			{
+				continue;
+			}
+			Col col = new Col();
+			col.name = member.getSimpleName().toString();
+			col.order = column.order();
+			col.skip = column.skip();
+			col.kind = Kind.of(((VariableElement) member).asType());
+			if (col.order < 1 || !orders.add(col.order))
+			{
+				error(member, "Column order " + col.order + " is less than 1 or used twice");
+				ok = false;
+			}
+			if (col.kind == null)
+			{
+				error(member, "Can't load a " + member.asType() + " from a record");
+				ok = false;
+				continue;
+			}
+			String cap = col.name.substring(0, 1).toUpperCase() + col.name.substring(1);
+			col.setter = "set" + cap;
+			col.getter = col.kind == Kind.BOOLEAN_PRIMITIVE && hasMethod(type, "is" + cap, null) ? "is" + cap : "get" + cap;
+			if (!hasMethod(type, col.getter, null) || !hasMethod(type, col.setter, member.asType()))
+			{
+				error(member, "Needs a public " + col.getter + "() and " + col.setter + "(" + member.asType() + ")");
+				ok = false;
+			}
+			cols.add(col);
+		}
+		Collections.sort(cols, Comparator.comparingInt(c -> c.order));
+		return ok ? cols : null;
+	}
+
+	/**
+	 * @param param the one parameter type, null for a getter with none
+	 */
+	private boolean hasMethod(TypeElement type, String name, TypeMirror param)
+	{
+		for (Element member: processingEnv.getElementUtils().getAllMembers(type))
+		{
+			if (member.getKind() != ElementKind.METHOD || !member.getSimpleName().contentEquals(name)
+					|| !member.getModifiers().contains(Modifier.PUBLIC))
+			{
+				continue;
+			}
+			List<? extends VariableElement> params = ((ExecutableElement) member).getParameters();
+			if (param == null ? params.isEmpty() : params.size() == 1 && processingEnv.getTypeUtils().isSameType(params.get(0).asType(), param))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Col find(List<Col> cols, String name)
+	{
+		for (Col col: cols)
+		{
+			if (col.name.equals(name))
+			{
+				return col;
+			}
+		}
+		return null;
+	}
+
+	private String source(String pkg, String simpleName, String beanName, List<Col> cols, List<Col> key)
+	{
+		int width = cols.isEmpty() ? 0 : cols.get(cols.size() - 1).order;
+		String[] columns = new String[width];
+		boolean[] skipped = new boolean[width];
+		Arrays.fill(skipped, true);
+		for (Col col: cols)
+		{
+			columns[col.order - 1] = col.name;
+			skipped[col.order - 1] = col.skip;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		if (!pkg.isEmpty())
+		{
+			sb.append("package ").append(pkg).append(";\n\n");
+		}
+		sb.append("import jason.bowles.hadoop.utils.BeanCodec;\n");
+		sb.append("import jason.bowles.hadoop.utils.BeanCodecs;\n");
+		sb.append("import jason.bowles.hadoop.utils.DelimitedTokenizer;\n");
+		sb.append("import jason.bowles.hadoop.utils.NumberParser;\n\n");
+		sb.append("/**\n * Generated by BeanCodecProcessor from ").append(beanName).append(", don't edit\n */\n");
+		sb.append("public final class ").append(simpleName).append(" implements BeanCodec<").append(beanName).append(">\n{\n");
+
+		sb.append("\tprivate static final String[] COLUMNS = {");
+		for (int i = 0; i < width; i++)
+		{
+			sb.append(i == 0 ? "" : ", ").append(columns[i] == null ? "null" : quote(columns[i]));
+		}
+		sb.append("};\n");
+		sb.append("\tprivate static final boolean[] SKIPPED = {");
+		for (int i = 0; i < width; i++)
+		{
+			sb.append(i == 0 ? "" : ", ").append(skipped[i]);
+		}
+		sb.append("};\n");
+		sb.append("\tprivate static final String[] KEY = {");
+		for (int i = 0; i < key.size(); i++)
+		{
+			sb.append(i == 0 ? "" : ", ").append(quote(key.get(i).name));
+		}
+		sb.append("};\n\n");
+
+		sb.append("\t@Override\n\tpublic Class<").append(beanName).append("> getBeanClass()\n\t{\n");
+		sb.append("\t\treturn ").append(beanName).append(".class;\n\t}\n\n");
+		sb.append("\t@Override\n\tpublic String[] getColumns()\n\t{\n\t\treturn COLUMNS.clone();\n\t}\n\n");
+		sb.append("\t@Override\n\tpublic boolean isSkipped(int column)\n\t{\n\t\treturn column >= SKIPPED.length || SKIPPED[column];\n\t}\n\n");
+		sb.append("\t@Override\n\tpublic String[] getKeyFields()\n\t{\n\t\treturn KEY.clone();\n\t}\n\n");
+
+		sb.append("\t@Override\n\tpublic void parse(").append(beanName).append(" bean, DelimitedTokenizer tokens)\n\t{\n");
+		sb.append("\t\tint count = tokens.count();\n");
+		for (Col col: cols)
+		{
+			if (!col.skip)
+			{
+				parse(sb, col);
+			}
+		}
+		sb.append("\t}\n\n");
+
+		sb.append("\t@Override\n\tpublic void appendTo(").append(beanName)
+				.append(" bean, StringBuilder sb, String delimiter, boolean includeSkipFields)\n\t{\n");
+		sb.append("\t\tboolean more = false;\n");
+		for (Col col: cols)
+		{
+			String indent = col.skip ? "\t\t\t" : "\t\t";
+			if (col.skip)
+			{
+				sb.append("\t\tif (includeSkipFields)\n\t\t{\n");
+			}
+			sb.append(indent).append("if (more)\n").append(indent).append("{\n");
+			sb.append(indent).append("\tsb.append(delimiter);\n").append(indent).append("}\n");
+			sb.append(indent).append(append(col, "delimiter")).append("\n");
+			sb.append(indent).append("more = true;\n");
+			if (col.skip)
+			{
+				sb.append("\t\t}\n");
+			}
+		}
+		sb.append("\t}\n\n");
+
+		sb.append("\t@Override\n\tpublic void appendKey(").append(beanName).append(" bean, StringBuilder sb, String delimiter)\n\t{\n");
+		for (int i = 0; i < key.size(); i++)
+		{
+			if (i > 0)
+			{
+				sb.append("\t\tsb.append(delimiter);\n");
+			}
+			sb.append("\t\t").append(append(key.get(i), "null")).append("\n");
+		}
+		sb.append("\t}\n\n");
+
+		List<Col> compared = key;
+		if (compared.isEmpty())
+		{
+			compared = new ArrayList<Col>();
+			for (Col col: cols)
+			{
+				if (!col.skip)
+				{
+					compared.add(col);
+				}
+			}
+		}
+		sb.append("\t@Override\n\tpublic int compare(").append(beanName).append(" a, ").append(beanName).append(" b)\n\t{\n");
+		if (!compared.isEmpty())
+		{
+			sb.append("\t\tint c;\n");
+		}
+		for (Col col: compared)
+		{
+			sb.append("\t\tc = ").append(compare(col)).append(";\n");
+			sb.append("\t\tif (c != 0)\n\t\t{\n\t\t\treturn c;\n\t\t}\n");
+		}
+		sb.append("\t\treturn 0;\n\t}\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	private static void parse(StringBuilder sb, Col col)
+	{
+		int column = col.order - 1;
+		String name = quote(col.name);
+		switch (col.kind)
+		{
+			case STRING:
+				sb.append("\t\tif (count > ").append(column).append(")\n\t\t{\n");
+				sb.append("\t\t\tbean.").append(col.setter).append("(BeanCodecs.text(bean, tokens, ").append(column).append("));\n");
+				sb.append("\t\t}\n");
+				break;
+			case BOOLEAN_PRIMITIVE:
+				sb.append("\t\tif (count > ").append(column).append(" && BeanCodecs.present(bean, tokens, ").append(column).append("))\n\t\t{\n");
+				sb.append("\t\t\tbean.").append(col.setter).append("(BeanCodecs.parseBoolean(tokens, ").append(column).append("));\n");
+				sb.append("\t\t}\n");
+				break;
+			case INT:
+			case LONG_PRIMITIVE:
+			case DOUBLE_PRIMITIVE:
+			case FLOAT_PRIMITIVE:
+				sb.append("\t\tif (count > ").append(column).append(" && BeanCodecs.number(bean, tokens, ").append(column).append(", ")
+						.append(name).append("))\n\t\t{\n");
+				sb.append("\t\t\tbean.").append(col.setter).append("(NumberParser.get().").append(col.kind.convert).append("());\n");
+				sb.append("\t\t}\n");
+				break;
+			default:
+				sb.append("\t\tif (count > ").append(column).append(")\n\t\t{\n");
+				sb.append("\t\t\t").append(col.kind.typeName).append(" value = BeanCodecs.").append(col.kind.convert)
+						.append("(bean, tokens, ").append(column).append(", ").append(name).append(");\n");
+				sb.append("\t\t\tif (value != null)\n\t\t\t{\n");
+				sb.append("\t\t\t\tbean.").append(col.setter).append("(value);\n");
+				sb.append("\t\t\t}\n\t\t}\n");
+				break;
+		}
+	}
+
+	private static String append(Col col, String delimiter)
+	{
+		String value = "bean." + col.getter + "()";
+		if (col.kind.append == null)
+		{
+			return "BeanCodecs.appendValue(sb, " + value + ", " + delimiter + ");";
+		}
+		return "BeanCodecs." + col.kind.append + "(sb, bean, " + (col.order - 1) + ", " + value + ", " + delimiter + ");";
+	}
+
+	private static String compare(Col col)
+	{
+		String a = "a." + col.getter + "()";
+		String b = "b." + col.getter + "()";
+		switch (col.kind)
+		{
+			case INT:
+				return "Integer.compare(" + a + ", " + b + ")";
+			case LONG_PRIMITIVE:
+				return "Long.compare(" + a + ", " + b + ")";
+			case DOUBLE_PRIMITIVE:
+				return "Double.compare(" + a + ", " + b + ")";
+			case FLOAT_PRIMITIVE:
+				return "Float.compare(" + a + ", " + b + ")";
+			case BOOLEAN_PRIMITIVE:
+				return "Boolean.compare(" + a + ", " + b + ")";
+			default:
+				return "BeanCodecs.compare(" + a + ", " + b + ")";
+		}
+	}
+
+	private static String quote(String name)
+	{
+		return "\"" + name + "\"";
+	}
+
+	private void error(Element element, String msg)
+	{
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, element);
+	}
+}
@@ -0,0 +1,457 @@
+package jason.bowles.hadoop.utils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Finds the generated {@link BeanCodec} for a bean class, and holds the little pieces of conversion the
+ * generated code calls so it behaves exactly like the reflective loader (same null handling, same error
+ * messages, same output).
+ *
+ * <p> The codec for a.b.MyBean is a.b.MyBeanCodec (a.b.Outer_InnerCodec for a nested class).  It is looked up
+ * once per class.  A class without one (or a bean laid out by a header) gets a {@link CompiledCodec} put
+ * together at runtime from its schema instead.
+ *
+ * <p> Which one is used can be picked with -Djason.bowles.hadoop.utils.codec=... (to A/B test them, or to get
+ * out of the way if one of them misbehaves):
+ * <ul>
+ * <li> auto - the generated codec if there is one, otherwise one compiled at runtime (the default)
+ * <li> annotated - only generated codecs, everything else goes through the getters and setters one by one
+ * <li> reflect - no codecs at all, the way beans were always loaded
+ * </ul>
+ * It is read once, when the first schema is built.
+ *
+ * @author id19868
+ */
+public final class BeanCodecs
+{
+	public static final String MODE_PROPERTY = "jason.bowles.hadoop.utils.codec";
+	public static final String MODE_AUTO = "auto";
+	public static final String MODE_ANNOTATED = "annotated";
+	public static final String MODE_REFLECT = "reflect";
+
+	private static final String MODE = System.getProperty(MODE_PROPERTY, MODE_AUTO);
+
+	private static final ClassValue<BeanCodec<?>> CODECS = new ClassValue<BeanCodec<?>>()
+	{
+		@Override
+		protected BeanCodec<?> computeValue(Class<?> type)
+		{
+			return load(type);
+		}
+	};
+
+	private BeanCodecs()
+	{
+	}
+
+	/**
+	 * @param beanClass
+	 * @return the generated codec for a {@link BeanRecord} class, null if there isn't one
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends BaseJavaBean> BeanCodec<T> forClass(Class<T> beanClass)
+	{
+		return (BeanCodec<T>) CODECS.get(beanClass);
+	}
+
+	/**
+	 * @param binaryName the {@link Class#getName()} of the bean
+	 * @return the name of its codec class
+	 */
+	public static String codecName(String binaryName)
+	{
+		int dot = binaryName.lastIndexOf('.');
+		return binaryName.substring(0, dot + 1) + binaryName.substring(dot + 1).replace('$', '_') + "Codec";
+	}
+
+	private static BeanCodec<?> load(Class<?> type)
+	{
+		if (!type.isAnnotationPresent(BeanRecord.class))
+		{
+			return null;
+		}
+		try
+		{
+			Class<?> codecClass = Class.forName(codecName(type.getName()), true, type.getClassLoader());
+			BeanCodec<?> codec = (BeanCodec<?>) codecClass.getDeclaredConstructor().newInstance();
+			return codec.getBeanClass() == type ? codec : null;
+		}
+		catch (ReflectiveOperationException | ClassCastException | LinkageError e)
+		{
+			// not generated (or out of date), the bean is loaded the old way
+			return null;
+		}
+	}
+
+	/**
+	 * @return the {@link #MODE_PROPERTY} in effect
+	 */
+	public static String getMode()
+	{
+		return MODE;
+	}
+
+	/**
+	 * The codec for a schema, depending on the mode
+	 * @param schema
+	 * @param fieldClass the class the fields are declared on
+	 * @return null to load the bean through its getters and setters
+	 */
+	static BeanCodec<BaseJavaBean> forSchema(BeanSchema schema, Class<?> fieldClass)
+	{
+		if (MODE_REFLECT.equals(MODE))
+		{
+			return null;
+		}
+		BeanCodec<BaseJavaBean> codec = generated(schema, fieldClass);
+		if (codec != null || MODE_ANNOTATED.equals(MODE))
+		{
+			return codec;
+		}
+		try
+		{
+			return CompiledCodec.compile(schema);
+		}
+		catch (RuntimeException | LinkageError e)
+		{
+			// can't be put together for this class, it just loads the old way
+			return null;
+		}
+	}
+
+	/**
+	 * The generated codec for the class the schema lays out, as long as the schema still matches the
+	 * annotations (a bean that adds names or reads a header gets a different layout)
+	 */
+	@SuppressWarnings("unchecked")
+	private static BeanCodec<BaseJavaBean> generated(BeanSchema schema, Class<?> fieldClass)
+	{
+		if (!BaseJavaBean.class.isAssignableFrom(fieldClass))
+		{
+			return null;
+		}
+		BeanCodec<BaseJavaBean> codec = (BeanCodec<BaseJavaBean>) CODECS.get(fieldClass);
+		if (codec == null)
+		{
+			return null;
+		}
+		String[] columns = codec.getColumns();
+		if (columns.length != schema.getColumnCount())
+		{
+			return null;
+		}
+		for (int i = 0; i < columns.length; i++)
+		{
+			if (columns[i] == null ? schema.getColumnName(i) != null : !columns[i].equals(schema.getColumnName(i)))
+			{
+				return null;
+			}
+			if (codec.isSkipped(i) != schema.isSkipped(i))
+			{
+				return null;
+			}
+		}
+		// and the fields have to be written out in column order
+		List<String> fields = schema.getFields(true);
+		int f = 0;
+		for (int i = 0; i < columns.length; i++)
+		{
+			if (columns[i] != null && (f >= fields.size() || !columns[i].equals(fields.get(f++))))
+			{
+				return null;
+			}
+		}
+		return f == fields.size() ? codec : null;
+	}
+
+	/**
+	 * @param codec
+	 * @param keyFields
+	 * @return a codec that builds the key from these fields, null if there isn't one
+	 */
+	static BeanCodec<BaseJavaBean> forKey(BeanCodec<BaseJavaBean> codec, String[] keyFields)
+	{
+		if (codec instanceof CompiledCodec)
+		{
+			return ((CompiledCodec) codec).forKey(keyFields);
+		}
+		return Arrays.equals(codec.getKeyFields(), keyFields) ? codec : null;
+	}
+
+	/*
+	 * Loading, called by the generated parse
+	 */
+
+	/**
+	 * @return the value of a String column (always set, even when it is empty)
+	 */
+	public static String text(BaseJavaBean bean, DelimitedTokenizer tokens, int column)
+	{
+		String value = tokens.get(column);
+		bean.loaded(column);
+		return value;
+	}
+
+	public static Integer toInteger(BaseJavaBean bean, DelimitedTokenizer tokens, int column, String name)
+	{
+		return (Integer) convert(bean, tokens, column, name, Integer.class);
+	}
+
+	public static Long toLong(BaseJavaBean bean, DelimitedTokenizer tokens, int column, String name)
+	{
+		return (Long) convert(bean, tokens, column, name, Long.class);
+	}
+
+	public static Double toDouble(BaseJavaBean bean, DelimitedTokenizer tokens, int column, String name)
+	{
+		return (Double) convert(bean, tokens, column, name, Double.class);
+	}
+
+	public static Float toFloat(BaseJavaBean bean, DelimitedTokenizer tokens, int column, String name)
+	{
+		return (Float) convert(bean, tokens, column, name, Float.class);
+	}
+
+	public static BigDecimal toBigDecimal(BaseJavaBean bean, DelimitedTokenizer tokens, int column, String name)
+	{
+		return (BigDecimal) convert(bean, tokens, column, name, BigDecimal.class);
+	}
+
+	public static Boolean toBoolean(BaseJavaBean bean, DelimitedTokenizer tokens, int column, String name)
+	{
+		return (Boolean) convert(bean, tokens, column, name, Boolean.class);
+	}
+
+	public static Date toDate(BaseJavaBean bean, DelimitedTokenizer tokens, int column, String name)
+	{
+		return (Date) convert(bean, tokens, column, name, Date.class);
+	}
+
+	/**
+	 * @return the converted value, null if it was empty or couldn't be converted (the error is on the bean)
+	 */
+	static Object convert(BaseJavaBean bean, DelimitedTokenizer tokens, int column, String name, Class<?> type)
+	{
+		Object value = bean.convertChars(tokens.chars(), tokens.start(column), tokens.end(column), column, name, type);
+		if (value != null)
+		{
+			bean.loaded(column);
+		}
+		return value;
+	}
+
+	/**
+	 * Parse a number column for a primitive field, the value is then in {@link NumberParser#get()}
+	 * @return false if it was empty or not a number (the error is on the bean)
+	 */
+	public static boolean number(BaseJavaBean bean, DelimitedTokenizer tokens, int column, String name)
+	{
+		CharSequence chars = tokens.chars();
+		int start = tokens.start(column);
+		int end = tokens.end(column);
+		if (BaseJavaBean.valueIsNull(chars, start, end))
+		{
+			return false;
+		}
+		if (!NumberParser.get().parse(chars, start, end))
+		{
+			bean.valueError(chars, start, end, name);
+			return false;
+		}
+		bean.loaded(column);
+		return true;
+	}
+
+	/**
+	 * @return false if the column is empty (a primitive field is left alone)
+	 */
+	public static boolean present(BaseJavaBean bean, DelimitedTokenizer tokens, int column)
+	{
+		if (BaseJavaBean.valueIsNull(tokens.chars(), tokens.start(column), tokens.end(column)))
+		{
+			return false;
+		}
+		bean.loaded(column);
+		return true;
+	}
+
+	/**
+	 * @return the column as a boolean ("1", "t" or "true")
+	 */
+	public static boolean parseBoolean(DelimitedTokenizer tokens, int column)
+	{
+		return BaseJavaBean.parseBoolean(tokens.chars(), tokens.start(column), tokens.end(column));
+	}
+
+	/*
+	 * Writing, called by the generated appendTo and appendKey.  The delimiter is the out delimiter for a record,
+	 * null for a key (key values are written as they are, no quotes and no 1/0 for booleans).
+	 *
+	 * Values are appended straight onto the buffer by type, nothing is turned into a String first.  The output is
+	 * the same as always: a Boolean is 1 or 0, a String that says true or false is too, and a value with the
+	 * delimiter in it (past its first character) is put in quotes.
+	 */
+
+	public static void appendValue(StringBuilder sb, Object value, String delimiter)
+	{
+		if (value == null)
+		{
+			return;
+		}
+		if (value instanceof String)
+		{
+			appendText(sb, (String) value, delimiter);
+			return;
+		}
+		if (value instanceof Boolean)
+		{
+			appendFlag(sb, ((Boolean) value).booleanValue(), delimiter);
+			return;
+		}
+		int start = sb.length();
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+		{
+			sb.append(((Number) value).longValue());
+		}
+		else if (value instanceof Double)
+		{
+			sb.append(((Double) value).doubleValue());
+		}
+		else if (value instanceof Float)
+		{
+			sb.append(((Float) value).floatValue());
+		}
+		else
+		{
+			appendText(sb, value.toString(), delimiter);
+			return;
+		}
+		quote(sb, start, delimiter);
+	}
+
+	private static void appendText(StringBuilder sb, String text, String delimiter)
+	{
+		if (delimiter == null)
+		{
+			sb.append(text);
+		}
+		else if (text.length() == 4 && "true".equalsIgnoreCase(text))
+		{
+			sb.append('1');
+		}
+		else if (text.length() == 5 && "false".equalsIgnoreCase(text))
+		{
+			sb.append('0');
+		}
+		else if (text.indexOf(delimiter) > 0)
+		{
+			sb.append('"').append(text).append('"');
+		}
+		else
+		{
+			sb.append(text);
+		}
+	}
+
+	private static void appendFlag(StringBuilder sb, boolean value, String delimiter)
+	{
+		if (delimiter == null)
+		{
+			sb.append(value);
+		}
+		else
+		{
+			sb.append(value ? '1' : '0');
+		}
+	}
+
+	/**
+	 * Put the value appended from start in quotes if the delimiter is in it
+	 */
+	private static void quote(StringBuilder sb, int start, String delimiter)
+	{
+		if (delimiter != null && !delimiter.isEmpty() && sb.indexOf(delimiter, start + 1) >= 0)
+		{
+			sb.insert(start, '"').append('"');
+		}
+	}
+
+	public static void appendDate(StringBuilder sb, BaseJavaBean bean, int column, Date value, String delimiter)
+	{
+		if (value == null || bean.getSchema().formatsDates())
+		{
+			// null is written as "null", and a bean with its own getDateString gets to use it
+			appendText(sb, bean.getDateString(value, bean.dateOutput(column)), delimiter);
+			return;
+		}
+		int start = sb.length();
+		DateFormatter.forPattern(bean.dateOutput(column)).appendTo(sb, value);
+		quote(sb, start, delimiter);
+	}
+
+	public static void appendInt(StringBuilder sb, BaseJavaBean bean, int column, int value, String delimiter)
+	{
+		if (value != 0 || !bean.isNullColumn(column))
+		{
+			int start = sb.length();
+			sb.append(value);
+			quote(sb, start, delimiter);
+		}
+	}
+
+	public static void appendLong(StringBuilder sb, BaseJavaBean bean, int column, long value, String delimiter)
+	{
+		if (value != 0 || !bean.isNullColumn(column))
+		{
+			int start = sb.length();
+			sb.append(value);
+			quote(sb, start, delimiter);
+		}
+	}
+
+	public static void appendDouble(StringBuilder sb, BaseJavaBean bean, int column, double value, String delimiter)
+	{
+		if (Double.doubleToRawLongBits(value) != 0 || !bean.isNullColumn(column))
+		{
+			int start = sb.length();
+			sb.append(value);
+			quote(sb, start, delimiter);
+		}
+	}
+
+	public static void appendFloat(StringBuilder sb, BaseJavaBean bean, int column, float value, String delimiter)
+	{
+		if (Float.floatToRawIntBits(value) != 0 || !bean.isNullColumn(column))
+		{
+			int start = sb.length();
+			sb.append(value);
+			quote(sb, start, delimiter);
+		}
+	}
+
+	public static void appendBoolean(StringBuilder sb, BaseJavaBean bean, int column, boolean value, String delimiter)
+	{
+		if (value || !bean.isNullColumn(column))
+		{
+			appendFlag(sb, value, delimiter);
+		}
+	}
+
+	/**
+	 * Compare two field values, nulls first
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static <C extends Comparable<? super C>> int compare(C a, C b)
+	{
+		if (a == null || b == null)
+		{
+			return a == null ? (b == null ? 0 : -1) : 1;
+		}
+		return a.compareTo(b);
+	}
+}
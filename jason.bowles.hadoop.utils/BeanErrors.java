@@ -0,0 +1,252 @@
+package jason.bowles.hadoop.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bad data counts for one bean class, added up across every bean (and thread) loading it.
+ *
+ * <p> A bad value is counted against its field, and a record with any bad value in it is counted once.  Only
+ * the first few bad records are kept as samples (see {@link #setSampleLimit(int)}), so a feed that is all
+ * garbage doesn't fill up the heap.  Every bad record can also be handed to a {@link QuarantineSink} to be
+ * written somewhere for a look later.
+ *
+ * <p> A lazy bean only converts the columns that are asked for, so only those bad values are counted (and a
+ * record is counted when it's loaded, not when a bad value turns up later).
+ * <pre>
+ * {@code
+ * BeanErrors errors = BeanErrors.forClass(ExampleBean.class);
+ * errors.setQuarantine((clzz, recNumber, record, msgs) -> rejects.write(record));
+ * ...
+ * context.getCounter("ExampleBean", "bad records").increment(errors.getBadRecords());
+ * }
+ * </pre>
+ *
+ * @author id19868
+ */
+public final class BeanErrors
+{
+	public static final int DEFAULT_SAMPLE_LIMIT = 20;
+
+	private static final ClassValue<BeanErrors> ERRORS = new ClassValue<BeanErrors>()
+	{
+		@Override
+		protected BeanErrors computeValue(Class<?> type)
+		{
+			return new BeanErrors(type);
+		}
+	};
+
+	/**
+	 * Where rejected records go
+	 */
+	public interface QuarantineSink
+	{
+		/**
+		 * Called once for every record that had a bad value (from the thread that loaded it)
+		 * @param beanClass
+		 * @param recNumber the record number passed to loadRecord
+		 * @param record the record as it was read
+		 * @param errors what was wrong with it
+		 */
+		void reject(Class<?> beanClass, Integer recNumber, String record, List<String> errors);
+	}
+
+	/**
+	 * One of the first bad records
+	 */
+	public static final class Sample
+	{
+		private final Integer recNumber;
+		private final String record;
+		private final List<String> errors;
+
+		Sample(Integer recNumber, String record, List<String> errors)
+		{
+			this.recNumber = recNumber;
+			this.record = record;
+			this.errors = Collections.unmodifiableList(new ArrayList<String>(errors));
+		}
+
+		public Integer getRecNumber()
+		{
+			return recNumber;
+		}
+
+		public String getRecord()
+		{
+			return record;
+		}
+
+		public List<String> getErrors()
+		{
+			return errors;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "rec " + recNumber + ": " + record + " " + errors;
+		}
+	}
+
+	private final Class<?> beanClass;
+	private final LongAdder badRecords = new LongAdder();
+	private final LongAdder badValues = new LongAdder();
+	private final ConcurrentMap<String, LongAdder> fieldCounts = new ConcurrentHashMap<String, LongAdder>();
+	private final AtomicInteger sampled = new AtomicInteger();
+	private final Queue<Sample> samples = new ConcurrentLinkedQueue<Sample>();
+	private volatile int sampleLimit = DEFAULT_SAMPLE_LIMIT;
+	private volatile QuarantineSink quarantine;
+
+	private BeanErrors(Class<?> beanClass)
+	{
+		this.beanClass = beanClass;
+	}
+
+	/**
+	 * @param beanClass
+	 * @return the counts for the bean class
+	 */
+	public static BeanErrors forClass(Class<?> beanClass)
+	{
+		return ERRORS.get(beanClass);
+	}
+
+	public Class<?> getBeanClass()
+	{
+		return beanClass;
+	}
+
+	/**
+	 * @return number of records loaded with at least one bad value
+	 */
+	public long getBadRecords()
+	{
+		return badRecords.sum();
+	}
+
+	/**
+	 * @return number of values that couldn't be converted
+	 */
+	public long getBadValues()
+	{
+		return badValues.sum();
+	}
+
+	/**
+	 * @param field
+	 * @return number of bad values for the field
+	 */
+	public long getBadValues(String field)
+	{
+		LongAdder count = fieldCounts.get(field);
+		return count == null ? 0 : count.sum();
+	}
+
+	/**
+	 * @return bad value counts by field name
+	 */
+	public Map<String, Long> getFieldCounts()
+	{
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> entry: fieldCounts.entrySet())
+		{
+			counts.put(entry.getKey(), entry.getValue().sum());
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the first bad records (up to the sample limit)
+	 */
+	public List<Sample> getSamples()
+	{
+		return new ArrayList<Sample>(samples);
+	}
+
+	/**
+	 * @param limit how many bad records to keep, 0 to keep none
+	 */
+	public void setSampleLimit(int limit)
+	{
+		this.sampleLimit = limit;
+	}
+
+	/**
+	 * @param sink where every bad record goes, null for nowhere
+	 */
+	public void setQuarantine(QuarantineSink sink)
+	{
+		this.quarantine = sink;
+	}
+
+	/**
+	 * Start the counts (and samples) over
+	 */
+	public void clear()
+	{
+		badRecords.reset();
+		badValues.reset();
+		fieldCounts.clear();
+		samples.clear();
+		sampled.set(0);
+	}
+
+	/**
+	 * A value of the field couldn't be converted
+	 * @param field
+	 */
+	void valueError(String field)
+	{
+		badValues.increment();
+		LongAdder count = fieldCounts.get(field);
+		if (count == null)
+		{
+			count = fieldCounts.computeIfAbsent(field, f -> new LongAdder());
+		}
+		count.increment();
+	}
+
+	/**
+	 * The bean was just loaded from a bad record
+	 * @param bean
+	 * @param recNumber
+	 */
+	void recordError(BaseJavaBean bean, Integer recNumber)
+	{
+		badRecords.increment();
+		QuarantineSink sink = quarantine;
+		boolean sample = sampled.get() < sampleLimit && sampled.incrementAndGet() <= sampleLimit;
+		if (!sample && sink == null)
+		{
+			// the usual case on a dirty feed, nothing gets built
+			return;
+		}
+		String record = bean.getFullRecord();
+		List<String> errors = bean.getErrMsgs();
+		if (sample)
+		{
+			samples.add(new Sample(recNumber, record, errors));
+		}
+		if (sink != null)
+		{
+			sink.reject(beanClass, recNumber, record, errors);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "BeanErrors[" + beanClass.getName() + " records=" + getBadRecords() + " values=" + getBadValues() + " " + getFieldCounts() + "]";
+	}
+}
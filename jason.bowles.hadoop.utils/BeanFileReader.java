@@ -0,0 +1,334 @@
+package jason.bowles.hadoop.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads a file of records (one per line, UTF-8) into beans, a piece at a time and in parallel.
+ *
+ * <p> The file is cut into chunks of a few MB that start right after a newline, so every chunk holds whole
+ * lines and can be loaded on its own.  A chunk is memory mapped when it is read (no copy of the file on the heap,
+ * and no limit on the size of the file, a mapping is only ever one chunk), and each line is loaded straight from
+ * its bytes with {@link BaseJavaBean#loadRecord(byte[], int, int, Integer)}.
+ *
+ * <p> A line ends at \n (a \r before it is dropped) and blank lines are skipped.  A quoted value can't have a
+ * newline in it, same as reading the file line by line.
+ *
+ * @author id19868
+ */
+final class BeanFileReader<T extends BaseJavaBean> implements Closeable
+{
+	private static final int MIN_CHUNK = 1 << 20;
+	private static final int MAX_CHUNK = 64 << 20;
+	// how far to look at a time for the end of a line
+	private static final int SCAN = 64 * 1024;
+
+	private final Class<T> type;
+	private final String delimiter;
+	private final FileChannel channel;
+	// chunk i is the bytes from starts[i] to starts[i + 1]
+	private final long[] starts;
+
+	/**
+	 * @param path
+	 * @param type
+	 * @param header true if the first line is a header (it is skipped)
+	 * @param delimiter the file's delimiter, null for the type's own
+	 * @throws IOException
+	 */
+	BeanFileReader(Path path, Class<T> type, boolean header, String delimiter) throws IOException
+	{
+		this.type = type;
+		this.delimiter = delimiter;
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		try
+		{
+			long size = channel.size();
+			long first = header ? lineAfter(0, size) : 0;
+			// a few chunks for every thread, so one slow chunk doesn't hold the rest up
+			long target = (size - first) / (ForkJoinPool.getCommonPoolParallelism() * 4L);
+			long chunk = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, target));
+			List<Long> bounds = new ArrayList<Long>();
+			bounds.add(first);
+			long last = first;
+			while (last < size)
+			{
+				long next = last + chunk >= size ? size : lineAfter(last + chunk, size);
+				bounds.add(next);
+				last = next;
+			}
+			this.starts = new long[bounds.size()];
+			for (int i = 0; i < starts.length; i++)
+			{
+				starts[i] = bounds.get(i);
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return where the line after the one at position starts (the size of the file if it is the last one)
+	 */
+	private long lineAfter(long position, long size) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN);
+		long at = position;
+		while (at < size)
+		{
+			buffer.clear();
+			int read = channel.read(buffer, at);
+			if (read <= 0)
+			{
+				break;
+			}
+			for (int i = 0; i < read; i++)
+			{
+				if (buffer.get(i) == '\n')
+				{
+					return at + i + 1;
+				}
+			}
+			at += read;
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of chunks
+	 */
+	int chunks()
+	{
+		return starts.length - 1;
+	}
+
+	long start(int chunk)
+	{
+		return starts[chunk];
+	}
+
+	long end(int chunk)
+	{
+		return starts[chunk + 1];
+	}
+
+	/**
+	 * Map part of the file (a chunk)
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	private MappedByteBuffer map(long start, long end)
+	{
+		try
+		{
+			return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the lines of a chunk, mapped
+	 */
+	Lines lines(int chunk)
+	{
+		return new Lines(map(start(chunk), end(chunk)));
+	}
+
+	/**
+	 * Load every line of a chunk into a new bean
+	 * @param chunk
+	 * @return the beans, in file order
+	 */
+	List<T> read(int chunk)
+	{
+		List<T> beans = new ArrayList<T>();
+		Lines lines = lines(chunk);
+		while (lines.next())
+		{
+			beans.add(load(lines));
+		}
+		return beans;
+	}
+
+	/**
+	 * @return a new bean loaded from the line lines is on
+	 */
+	T load(Lines lines)
+	{
+		T bean = BeanPool.newInstance(type);
+		if (delimiter != null)
+		{
+			bean.setDelimiter(delimiter);
+			bean.setOutDelimiter(delimiter);
+		}
+		bean.loadRecord(lines.line, 0, lines.length);
+		return bean;
+	}
+
+	/**
+	 * Read all the chunks on the fork join pool
+	 * @return the beans, in file order
+	 */
+	List<T> readAll()
+	{
+		int count = chunks();
+		List<List<T>> parts = new ArrayList<List<T>>(count);
+		for (int i = 0; i < count; i++)
+		{
+			parts.add(null);
+		}
+		ForkJoinPool.commonPool().invoke(new ReadTask(parts, 0, count));
+		int size = 0;
+		for (List<T> part: parts)
+		{
+			size += part.size();
+		}
+		List<T> beans = new ArrayList<T>(size);
+		for (List<T> part: parts)
+		{
+			beans.addAll(part);
+		}
+		return beans;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	/**
+	 * Reads chunks from to to, splitting in half until it's one chunk
+	 */
+	@SuppressWarnings("serial")
+	private final class ReadTask extends RecursiveAction
+	{
+		private final List<List<T>> parts;
+		private final int from;
+		private final int to;
+
+		ReadTask(List<List<T>> parts, int from, int to)
+		{
+			this.parts = parts;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= 1)
+			{
+				if (to > from)
+				{
+					parts.set(from, read(from));
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ReadTask(parts, from, middle), new ReadTask(parts, middle, to));
+		}
+	}
+
+	/**
+	 * Walks the lines of a mapped piece of the file
+	 */
+	static final class Lines
+	{
+		private final ByteBuffer buffer;
+		private byte[] line = new byte[256];
+		private int length;
+
+		Lines(ByteBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+
+		/**
+		 * Move to the next line that isn't blank
+		 * @return false at the end
+		 */
+		boolean next()
+		{
+			while (buffer.hasRemaining())
+			{
+				int start = buffer.position();
+				int limit = buffer.limit();
+				int end = start;
+				while (end < limit && buffer.get(end) != '\n')
+				{
+					end++;
+				}
+				int next = end < limit ? end + 1 : end;
+				if (end > start && buffer.get(end - 1) == '\r')
+				{
+					end--;
+				}
+				length = end - start;
+				if (line.length < length)
+				{
+					line = new byte[Math.max(length, line.length * 2)];
+				}
+				buffer.get(line, 0, length);
+				buffer.position(next);
+				if (length > 0)
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @return the number of bytes left
+		 */
+		int remaining()
+		{
+			return buffer.remaining();
+		}
+
+		/**
+		 * Split off about the first half of what's left, at the end of a line
+		 * @return the lines before the split (this goes on after them), null if there's no line end to split at
+		 */
+		Lines split()
+		{
+			int start = buffer.position();
+			int limit = buffer.limit();
+			if (limit - start < 2)
+			{
+				return null;
+			}
+			int cut = start + ((limit - start) >>> 1);
+			while (cut < limit && buffer.get(cut - 1) != '\n')
+			{
+				cut++;
+			}
+			if (cut >= limit)
+			{
+				return null;
+			}
+			ByteBuffer first = buffer.duplicate();
+			first.limit(cut);
+			buffer.position(cut);
+			return new Lines(first);
+		}
+	}
+}
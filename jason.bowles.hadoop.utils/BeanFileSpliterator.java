@@ -0,0 +1,100 @@
+package jason.bowles.hadoop.utils;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The Spliterator behind {@link JavaBeanUtil#stream(java.nio.file.Path, Class, boolean, String)}, a bean per line
+ * of a {@link BeanFileReader}'s file.
+ *
+ * <p> Nothing is read ahead: a line is loaded into a new bean when {@link #tryAdvance(Consumer)} gets to it, and the
+ * file is mapped a chunk at a time (off the heap), so memory doesn't grow with the size of the file.
+ *
+ * <p> Splitting hands off whole chunks while there is more than one left, then cuts the last one in half at a
+ * line end, so a parallel stream always splits on line boundaries.  The estimated size is the number of bytes
+ * left, not lines, which is all splitting needs.
+ *
+ * @author id19868
+ */
+final class BeanFileSpliterator<T extends BaseJavaBean> implements Spliterator<T>
+{
+	// don't split a chunk smaller than this, not worth a task
+	private static final int MIN_SPLIT = 64 * 1024;
+
+	private final BeanFileReader<T> reader;
+	// the chunks that haven't been started
+	private int next;
+	private final int to;
+	// the lines of the chunk being read, null between chunks
+	private BeanFileReader.Lines lines;
+
+	BeanFileSpliterator(BeanFileReader<T> reader)
+	{
+		this(reader, 0, reader.chunks(), null);
+	}
+
+	private BeanFileSpliterator(BeanFileReader<T> reader, int next, int to, BeanFileReader.Lines lines)
+	{
+		this.reader = reader;
+		this.next = next;
+		this.to = to;
+		this.lines = lines;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action)
+	{
+		while (lines == null || !lines.next())
+		{
+			if (next >= to)
+			{
+				lines = null;
+				return false;
+			}
+			lines = reader.lines(next++);
+		}
+		action.accept(reader.load(lines));
+		return true;
+	}
+
+	@Override
+	public Spliterator<T> trySplit()
+	{
+		if (to - next >= 2)
+		{
+			// the lines left in this chunk and the first half of the others go, in file order
+			int middle = (next + to) >>> 1;
+			Spliterator<T> first = new BeanFileSpliterator<T>(reader, next, middle, lines);
+			next = middle;
+			lines = null;
+			return first;
+		}
+		if (lines == null && next < to)
+		{
+			lines = reader.lines(next++);
+		}
+		if (next < to || lines == null || lines.remaining() < MIN_SPLIT)
+		{
+			return null;
+		}
+		BeanFileReader.Lines first = lines.split();
+		return first == null ? null : new BeanFileSpliterator<T>(reader, next, next, first);
+	}
+
+	@Override
+	public long estimateSize()
+	{
+		long size = lines == null ? 0 : lines.remaining();
+		if (next < to)
+		{
+			size += reader.end(to - 1) - reader.start(next);
+		}
+		return size;
+	}
+
+	@Override
+	public int characteristics()
+	{
+		return ORDERED | NONNULL | IMMUTABLE;
+	}
+}
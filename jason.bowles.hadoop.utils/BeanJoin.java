@@ -0,0 +1,251 @@
+package jason.bowles.hadoop.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+/**
+ * A reduce side join of two bean types on their {@link BaseJavaBean#getKeyFields()}.
+ *
+ * <p> One type is the build side (the smaller one, say customers) and the other the probe side (orders).  The
+ * mapper writes every bean with {@link #write(BaseJavaBean, TaskInputOutputContext)}: a {@link JoinKey} made of
+ * the bean's {@link BeanKey} and its side, and the bean's record tagged with its type (see {@link BeanTypeRegistry}).
+ * The shuffle sorts the build side of each key ahead of the probe side, so the reducer only has to hold on to the
+ * build beans of the key it's on, and the probe values are loaded and joined one at a time:
+ * <pre>
+ * {@code
+ * // driver
+ * BeanJoin.configure(job);
+ *
+ * // mapper and reducer
+ * private final BeanJoin<CustomerBean, OrderBean> join = new BeanJoin<>(CustomerBean.class, OrderBean.class, BeanJoin.Type.LEFT);
+ *
+ * // map (a CustomerBean or an OrderBean)
+ * join.write(bean, context);
+ *
+ * // reduce
+ * join.join(values, (customer, order) -> context.write(...));
+ * }
+ * </pre>
+ * <ul>
+ * <li> INNER: each probe bean with each build bean of its key
+ * <li> LEFT: same, and a probe bean with no build beans comes once with a null build bean
+ * <li> ANTI: only the probe beans with no build beans (with a null build bean), the build side isn't loaded at all
+ * </ul>
+ * The key fields of the two types have to line up (same number, same types, in the same order) since the keys are
+ * compared as bytes.  A null key value matches another null, same as two keys with nulls group together.
+ *
+ * <p> The probe bean is the thread's reusable bean (see {@link BeanPool}) and is loaded over by the next value,
+ * copy anything you keep.  Not thread-safe, one per mapper / reducer.
+ *
+ * @author id19868
+ */
+public class BeanJoin<B extends BaseJavaBean, P extends BaseJavaBean>
+{
+	public enum Type { INNER, LEFT, ANTI }
+
+	/**
+	 * Gets each joined pair (it can write to the reducer's context, so it can throw what that throws)
+	 */
+	@FunctionalInterface
+	public interface Handler<B, P>
+	{
+		/**
+		 * @param build null for a probe bean with no match (LEFT and ANTI)
+		 * @param probe
+		 */
+		void joined(B build, P probe) throws IOException, InterruptedException;
+	}
+
+	// the sides in the JoinKey, the build side sorts first
+	static final int BUILD = 0;
+	static final int PROBE = 1;
+
+	private final BeanTypeRegistry registry;
+	private final Class<B> buildType;
+	private final Class<P> probeType;
+	private final int buildTag;
+	private final int probeTag;
+	private final Type type;
+	private final List<B> build = new ArrayList<B>();
+	private final JoinKey key = new JoinKey();
+	private final Text value = new Text();
+
+	/**
+	 * @param buildType the side that is held for each key (the smaller one)
+	 * @param probeType the side that is streamed
+	 * @param type
+	 */
+	public BeanJoin(Class<B> buildType, Class<P> probeType, Type type)
+	{
+		this(new BeanTypeRegistry(Arrays.<Class<? extends BaseJavaBean>>asList(buildType, probeType)), buildType, probeType, type);
+	}
+
+	/**
+	 * @param registry has both types (the map and reduce side need the same one)
+	 * @param buildType the side that is held for each key (the smaller one)
+	 * @param probeType the side that is streamed
+	 * @param type
+	 * @throws IllegalArgumentException if a type isn't in the registry, or they're the same type
+	 */
+	public BeanJoin(BeanTypeRegistry registry, Class<B> buildType, Class<P> probeType, Type type)
+	{
+		super();
+		this.registry = registry;
+		this.buildType = buildType;
+		this.probeType = probeType;
+		this.buildTag = registry.getTag(buildType);
+		this.probeTag = registry.getTag(probeType);
+		this.type = type;
+		if (buildTag < 0 || probeTag < 0)
+		{
+			throw new IllegalArgumentException((buildTag < 0 ? buildType : probeType).getName() + " isn't registered");
+		}
+		if (buildTag == probeTag)
+		{
+			throw new IllegalArgumentException("Both sides are " + buildType.getName());
+		}
+	}
+
+	/**
+	 * Set up the shuffle for a join: {@link JoinKey} and Text map output, partitioned and grouped by the
+	 * BeanKey alone (the sort is JoinKey's own comparator, the build side first)
+	 * @param job
+	 */
+	public static void configure(Job job)
+	{
+		job.setMapOutputKeyClass(JoinKey.class);
+		job.setMapOutputValueClass(Text.class);
+		job.setPartitionerClass(JoinKey.Partitioner.class);
+		job.setGroupingComparatorClass(JoinKey.GroupingComparator.class);
+	}
+
+	public Type getType()
+	{
+		return type;
+	}
+
+	public Class<B> getBuildType()
+	{
+		return buildType;
+	}
+
+	public Class<P> getProbeType()
+	{
+		return probeType;
+	}
+
+	private int side(BaseJavaBean bean)
+	{
+		Class<?> clzz = bean.getClass();
+		if (clzz == buildType)
+		{
+			return BUILD;
+		}
+		if (clzz == probeType)
+		{
+			return PROBE;
+		}
+		throw new IllegalArgumentException(clzz.getName() + " isn't part of the join");
+	}
+
+	/**
+	 * @param bean a build or probe bean
+	 * @return its map output key (the same object every time)
+	 */
+	public JoinKey getKey(BaseJavaBean bean)
+	{
+		return key.set(bean.getBeanKey(), side(bean));
+	}
+
+	/**
+	 * @param bean a build or probe bean
+	 * @return its map output value, its tagged record (the same object every time)
+	 */
+	public Text getValue(BaseJavaBean bean)
+	{
+		registry.getTaggedRecord(bean, value);
+		return value;
+	}
+
+	/**
+	 * Write a build or probe bean from the mapper
+	 * @param bean
+	 * @param context
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void write(BaseJavaBean bean, TaskInputOutputContext<?, ?, ? super JoinKey, ? super Text> context) throws IOException, InterruptedException
+	{
+		context.write(getKey(bean), getValue(bean));
+	}
+
+	/**
+	 * Join the values of one key (a reduce call)
+	 * @param values the build side first, then the probe side (what {@link #configure(Job)} sets up)
+	 * @param handler
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws IllegalStateException if a build value comes after a probe value
+	 */
+	public void join(Iterable<Text> values, Handler<? super B, ? super P> handler) throws IOException, InterruptedException
+	{
+		build.clear();
+		boolean built = false;
+		boolean probed = false;
+		for (Text value: values)
+		{
+			int tag = registry.getTag(value);
+			if (tag == buildTag)
+			{
+				if (probed)
+				{
+					throw new IllegalStateException("A " + buildType.getName() + " came after a " + probeType.getName()
+						+ ", the job isn't sorting the build side first (see BeanJoin.configure)");
+				}
+				built = true;
+				if (type != Type.ANTI)
+				{
+					build.add(buildType.cast(registry.load(tag, value, false)));
+				}
+			}
+			else if (tag == probeTag)
+			{
+				probed = true;
+				if (type == Type.INNER && !built)
+				{
+					// nothing to join with, don't load it
+					continue;
+				}
+				if (type == Type.ANTI && built)
+				{
+					continue;
+				}
+				P probe = probeType.cast(registry.load(tag, value, true));
+				if (!built)
+				{
+					handler.joined(null, probe);
+					continue;
+				}
+				for (B b: build)
+				{
+					handler.joined(b, probe);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the build beans of the last key that was joined (empty for ANTI)
+	 */
+	public List<B> getBuild()
+	{
+		return Collections.unmodifiableList(build);
+	}
+}
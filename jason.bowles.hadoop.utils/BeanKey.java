@@ -0,0 +1,856 @@
+package jason.bowles.hadoop.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * A key made of the typed values of some fields of a bean (its {@link BaseJavaBean#getKeyFields()} unless you say
+ * otherwise), for the map output key instead of the String from {@link BaseJavaBean#createKey()}.
+ *
+ * <p> The String key sorts as text, so 10 comes before 9 and 01/02/2014 comes before 12/31/2013.  This key is
+ * kept as bytes that sort the same way the values do, so comparing two keys is just comparing bytes, and the
+ * shuffle can sort them without reading them back ({@link Comparator} is registered for the class, there is
+ * nothing to set on the job).  Each value is a one byte type tag (0 for a null, so nulls come first) followed by:
+ * <ul>
+ * <li> int / Integer (and short, byte): 4 bytes big endian with the sign bit flipped
+ * <li> long / Long, Date (its epoch millis): 8 bytes the same way
+ * <li> double / Double, float / Float: the 8 bytes of the double with the sign bit flipped (all the bits flipped
+ *      when it's negative), the same order as {@link Double#compare(double, double)}
+ * <li> boolean / Boolean: 0 or 1
+ * <li> BigDecimal: sign, exponent and digits (1.5 and 1.50 are the same key, like compareTo)
+ * <li> String (and anything else, by its String value): the UTF-8 bytes with a 0 escaped as 0 FF, ending with 0 1
+ *      (UTF-8 byte order is code point order, which only differs from String.compareTo for characters past
+ *      U+FFFF against U+E000 - U+FFFF)
+ * </ul>
+ * Since the tags are in the bytes a key can be read back on its own, see {@link #get(int)}.
+ *
+ * <p> Each key also has a 64 bit hash of its bytes ({@link #getHash()}), worked out once and written along with
+ * the key.  equals checks it before the bytes, so a BeanKey makes a cheap HashMap key for an in memory join
+ * (keep a {@link #copy()}, keys get reused), and {@link Partitioner} and {@link GroupingComparator} use it in
+ * the shuffle.
+ * <pre>
+ * {@code
+ * private final BeanKey key = new BeanKey();
+ * ...
+ * bean.loadRecord(value);
+ * context.write(key.set(bean), bean);
+ * }
+ * </pre>
+ *
+ * @author id19868
+ */
+public class BeanKey implements WritableComparable<BeanKey>
+{
+	static final byte NULL = 0;
+	static final byte INT = 1;
+	static final byte LONG = 2;
+	static final byte DOUBLE = 3;
+	static final byte BOOLEAN = 4;
+	static final byte DATE = 5;
+	static final byte DECIMAL = 6;
+	static final byte STRING = 7;
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private static final Comparator COMPARATOR = new Comparator();
+
+	static
+	{
+		WritableComparator.define(BeanKey.class, COMPARATOR);
+	}
+
+	private byte[] bytes = EMPTY;
+	private int length;
+	private int count;
+	// worked out once per key (and carried along when it is written), see getHash
+	private long hash;
+	private boolean hashed;
+
+	public BeanKey()
+	{
+	}
+
+	/**
+	 * @param bean
+	 * @see #set(BaseJavaBean)
+	 */
+	public BeanKey(BaseJavaBean bean)
+	{
+		set(bean);
+	}
+
+	/**
+	 * Make this the key of the bean (the values of its {@link BaseJavaBean#getKeyFields()})
+	 * @param bean
+	 * @return this
+	 */
+	public BeanKey set(BaseJavaBean bean)
+	{
+		return set(bean, bean.getKeyFields());
+	}
+
+	/**
+	 * Make this the key of these fields of the bean
+	 * @param bean
+	 * @param fields
+	 * @return this
+	 */
+	public BeanKey set(BaseJavaBean bean, String[] fields)
+	{
+		if (fields == null)
+		{
+			throw new IllegalArgumentException("No key fields for " + bean.getClass().getName());
+		}
+		bean.materialize();
+		clear();
+		bean.getSchema().getKeyLayout(fields).append(bean, this);
+		return this;
+	}
+
+	/**
+	 * Make this a copy of the other key
+	 * @param other
+	 * @return this
+	 */
+	public BeanKey set(BeanKey other)
+	{
+		clear();
+		reserve(other.length);
+		System.arraycopy(other.bytes, 0, bytes, 0, other.length);
+		this.length = other.length;
+		this.count = other.count;
+		this.hash = other.hash;
+		this.hashed = other.hashed;
+		return this;
+	}
+
+	/**
+	 * @return a copy of the key (to keep in a map, the key a bean or a reducer hands you gets reused)
+	 */
+	public BeanKey copy()
+	{
+		return new BeanKey().set(this);
+	}
+
+	/**
+	 * Empty the key, to build one up with the add methods
+	 * @return this
+	 */
+	public BeanKey clear()
+	{
+		this.length = 0;
+		this.count = 0;
+		this.hashed = false;
+		return this;
+	}
+
+	/*
+	 * Building a key by hand (to look one up, say).  The values have to be added with the same types as the
+	 * fields of the keys they are compared with.
+	 */
+
+	public BeanKey addNull()
+	{
+		reserve(1);
+		bytes[length++] = NULL;
+		added();
+		return this;
+	}
+
+	public BeanKey add(int value)
+	{
+		reserve(5);
+		bytes[length++] = INT;
+		putInt(value ^ Integer.MIN_VALUE);
+		added();
+		return this;
+	}
+
+	public BeanKey add(long value)
+	{
+		reserve(9);
+		bytes[length++] = LONG;
+		putLong(value ^ Long.MIN_VALUE);
+		added();
+		return this;
+	}
+
+	public BeanKey add(double value)
+	{
+		long bits = Double.doubleToLongBits(value);
+		reserve(9);
+		bytes[length++] = DOUBLE;
+		putLong(bits ^ ((bits >> 63) | Long.MIN_VALUE));
+		added();
+		return this;
+	}
+
+	public BeanKey add(boolean value)
+	{
+		reserve(2);
+		bytes[length++] = BOOLEAN;
+		bytes[length++] = (byte) (value ? 1 : 0);
+		added();
+		return this;
+	}
+
+	public BeanKey add(Date value)
+	{
+		if (value == null)
+		{
+			return addNull();
+		}
+		reserve(9);
+		bytes[length++] = DATE;
+		putLong(value.getTime() ^ Long.MIN_VALUE);
+		added();
+		return this;
+	}
+
+	public BeanKey add(BigDecimal value)
+	{
+		if (value == null)
+		{
+			return addNull();
+		}
+		int signum = value.signum();
+		reserve(2);
+		bytes[length++] = DECIMAL;
+		bytes[length++] = (byte) (signum + 1);
+		if (signum != 0)
+		{
+			// d.ddd x 10^exponent, the exponent first then the digits, all of it flipped for a negative number
+			String digits = value.unscaledValue().abs().toString();
+			int last = digits.length();
+			while (digits.charAt(last - 1) == '0')
+			{
+				last--;
+			}
+			int exponent = digits.length() - value.scale() - 1;
+			int flip = signum < 0 ? 0xff : 0;
+			reserve(4 + last + 1);
+			int start = length;
+			putInt(exponent ^ Integer.MIN_VALUE);
+			for (int i = 0; i < last; i++)
+			{
+				bytes[length++] = (byte) digits.charAt(i);
+			}
+			bytes[length++] = 0;
+			for (int i = start; i < length; i++)
+			{
+				bytes[i] ^= flip;
+			}
+		}
+		added();
+		return this;
+	}
+
+	public BeanKey add(String value)
+	{
+		if (value == null)
+		{
+			return addNull();
+		}
+		int chars = value.length();
+		// 3 bytes a char at most, plus the tag and the end
+		reserve(chars * 3 + 3);
+		bytes[length++] = STRING;
+		for (int i = 0; i < chars; i++)
+		{
+			char c = value.charAt(i);
+			if (c == 0)
+			{
+				bytes[length++] = 0;
+				bytes[length++] = (byte) 0xff;
+			}
+			else if (c < 0x80)
+			{
+				bytes[length++] = (byte) c;
+			}
+			else if (c < 0x800)
+			{
+				bytes[length++] = (byte) (0xc0 | (c >> 6));
+				bytes[length++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(value.charAt(i + 1)))
+			{
+				int cp = Character.toCodePoint(c, value.charAt(++i));
+				bytes[length++] = (byte) (0xf0 | (cp >> 18));
+				bytes[length++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				bytes[length++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				bytes[length++] = (byte) (0x80 | (cp & 0x3f));
+			}
+			else if (Character.isSurrogate(c))
+			{
+				bytes[length++] = (byte) '?';
+			}
+			else
+			{
+				bytes[length++] = (byte) (0xe0 | (c >> 12));
+				bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				bytes[length++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		bytes[length++] = 0;
+		bytes[length++] = 1;
+		added();
+		return this;
+	}
+
+	/**
+	 * Add a value by its type (Integer, Long, Double, Float, Boolean, Date, BigDecimal, anything else as a String)
+	 * @param value
+	 * @return this
+	 */
+	public BeanKey add(Object value)
+	{
+		if (value == null)
+		{
+			return addNull();
+		}
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+		{
+			return add(((Number) value).intValue());
+		}
+		if (value instanceof Long)
+		{
+			return add(((Long) value).longValue());
+		}
+		if (value instanceof Double || value instanceof Float)
+		{
+			return add(((Number) value).doubleValue());
+		}
+		if (value instanceof Boolean)
+		{
+			return add(((Boolean) value).booleanValue());
+		}
+		if (value instanceof Date)
+		{
+			return add((Date) value);
+		}
+		if (value instanceof BigDecimal)
+		{
+			return add((BigDecimal) value);
+		}
+		return add(value.toString());
+	}
+
+	/**
+	 * @return the number of values in the key
+	 */
+	public int size()
+	{
+		return count;
+	}
+
+	/**
+	 * Read one value back out of the key (it isn't kept as an object, so this builds one)
+	 * @param index
+	 * @return the value: Integer, Long, Double (for a float too), Boolean, Date, BigDecimal or String
+	 */
+	public Object get(int index)
+	{
+		if (index < 0 || index >= count)
+		{
+			throw new IndexOutOfBoundsException("Key has " + count + " values, no " + index);
+		}
+		int pos = 0;
+		for (int i = 0; i < index; i++)
+		{
+			pos = skip(pos);
+		}
+		return decode(pos);
+	}
+
+	/**
+	 * @return all the values, see {@link #get(int)}
+	 */
+	public List<Object> getValues()
+	{
+		List<Object> values = new ArrayList<Object>(count);
+		int pos = 0;
+		for (int i = 0; i < count; i++)
+		{
+			values.add(decode(pos));
+			pos = skip(pos);
+		}
+		return values;
+	}
+
+	private int skip(int pos)
+	{
+		switch (bytes[pos])
+		{
+			case NULL:
+				return pos + 1;
+			case INT:
+				return pos + 5;
+			case LONG:
+			case DOUBLE:
+			case DATE:
+				return pos + 9;
+			case BOOLEAN:
+				return pos + 2;
+			case DECIMAL:
+				if (bytes[pos + 1] == 1)
+				{
+					return pos + 2;
+				}
+				int end = pos + 6;
+				byte stop = bytes[pos + 1] == 0 ? (byte) 0xff : 0;
+				while (bytes[end] != stop)
+				{
+					end++;
+				}
+				return end + 1;
+			default:
+				int i = pos + 1;
+				while (bytes[i] != 0 || bytes[i + 1] != 1)
+				{
+					i += bytes[i] == 0 ? 2 : 1;
+				}
+				return i + 2;
+		}
+	}
+
+	private Object decode(int pos)
+	{
+		switch (bytes[pos])
+		{
+			case NULL:
+				return null;
+			case INT:
+				return getInt(pos + 1) ^ Integer.MIN_VALUE;
+			case LONG:
+				return getLong(pos + 1) ^ Long.MIN_VALUE;
+			case DOUBLE:
+				long bits = getLong(pos + 1);
+				return Double.longBitsToDouble(bits < 0 ? bits ^ Long.MIN_VALUE : ~bits);
+			case BOOLEAN:
+				return bytes[pos + 1] != 0;
+			case DATE:
+				return new Date(getLong(pos + 1) ^ Long.MIN_VALUE);
+			case DECIMAL:
+				int signum = bytes[pos + 1] - 1;
+				if (signum == 0)
+				{
+					return BigDecimal.ZERO;
+				}
+				int flip = signum < 0 ? 0xff : 0;
+				int exponent = 0;
+				for (int i = 0; i < 4; i++)
+				{
+					exponent = (exponent << 8) | ((bytes[pos + 2 + i] ^ flip) & 0xff);
+				}
+				exponent ^= Integer.MIN_VALUE;
+				StringBuilder digits = new StringBuilder();
+				for (int i = pos + 6; ((bytes[i] ^ flip) & 0xff) != 0; i++)
+				{
+					digits.append((char) ((bytes[i] ^ flip) & 0xff));
+				}
+				BigInteger unscaled = new BigInteger(digits.toString());
+				return new BigDecimal(signum < 0 ? unscaled.negate() : unscaled, digits.length() - 1 - exponent);
+			default:
+				byte[] text = new byte[skip(pos) - pos];
+				int n = 0;
+				for (int i = pos + 1; bytes[i] != 0 || bytes[i + 1] != 1; i++)
+				{
+					text[n++] = bytes[i];
+					if (bytes[i] == 0)
+					{
+						i++;
+					}
+				}
+				return new String(text, 0, n, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * @return the encoded key, only the first {@link #getLength()} bytes are used
+	 */
+	public byte[] getBytes()
+	{
+		return bytes;
+	}
+
+	public int getLength()
+	{
+		return length;
+	}
+
+	/**
+	 * A 64 bit hash of the bytes, worked out the first time it is asked for.  The {@link Partitioner} and
+	 * {@link GroupingComparator} use it, so does {@link #hashCode()}.
+	 * @return
+	 */
+	public long getHash()
+	{
+		if (!hashed)
+		{
+			hash = hash(bytes, 0, length);
+			hashed = true;
+		}
+		return hash;
+	}
+
+	/**
+	 * Written as the vint length, the vint number of values, the bytes and then the 8 byte hash (so it isn't
+	 * worked out again on the other side)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException
+	{
+		WritableUtils.writeVInt(out, length);
+		WritableUtils.writeVInt(out, count);
+		out.write(bytes, 0, length);
+		out.writeLong(getHash());
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException
+	{
+		int size = WritableUtils.readVInt(in);
+		this.count = WritableUtils.readVInt(in);
+		this.length = 0;
+		reserve(size);
+		in.readFully(bytes, 0, size);
+		this.length = size;
+		this.hash = in.readLong();
+		this.hashed = true;
+	}
+
+	@Override
+	public int compareTo(BeanKey other)
+	{
+		return WritableComparator.compareBytes(bytes, 0, length, other.bytes, 0, other.length);
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof BeanKey))
+		{
+			return false;
+		}
+		BeanKey other = (BeanKey) obj;
+		// the hash tells most keys apart without looking at the bytes
+		return length == other.length && getHash() == other.getHash() && compareTo(other) == 0;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		long h = getHash();
+		return (int) (h ^ (h >>> 32));
+	}
+
+	@Override
+	public String toString()
+	{
+		return getValues().toString();
+	}
+
+	private void added()
+	{
+		count++;
+		hashed = false;
+	}
+
+	/**
+	 * A murmur3 style 64 bit hash, 8 bytes at a time
+	 */
+	static long hash(byte[] b, int offset, int length)
+	{
+		long h = 0x9e3779b97f4a7c15L ^ length;
+		int end = offset + (length & ~7);
+		int i = offset;
+		for (; i < end; i += 8)
+		{
+			long k = (b[i] & 0xffL) | (b[i + 1] & 0xffL) << 8 | (b[i + 2] & 0xffL) << 16 | (b[i + 3] & 0xffL) << 24
+					| (b[i + 4] & 0xffL) << 32 | (b[i + 5] & 0xffL) << 40 | (b[i + 6] & 0xffL) << 48 | (b[i + 7] & 0xffL) << 56;
+			h ^= mix(k);
+			h = Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+		}
+		long k = 0;
+		for (int shift = 0; i < offset + length; i++, shift += 8)
+		{
+			k |= (b[i] & 0xffL) << shift;
+		}
+		h ^= mix(k);
+		// fmix64
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static long mix(long k)
+	{
+		k *= 0x87c37b91114253d5L;
+		k = Long.rotateLeft(k, 31);
+		return k * 0x4cf5ad432745937fL;
+	}
+
+	private void reserve(int more)
+	{
+		if (length + more > bytes.length)
+		{
+			bytes = Arrays.copyOf(bytes, Math.max(length + more, Math.max(32, bytes.length * 2)));
+		}
+	}
+
+	private void putInt(int value)
+	{
+		bytes[length++] = (byte) (value >>> 24);
+		bytes[length++] = (byte) (value >>> 16);
+		bytes[length++] = (byte) (value >>> 8);
+		bytes[length++] = (byte) value;
+	}
+
+	private void putLong(long value)
+	{
+		putInt((int) (value >>> 32));
+		putInt((int) value);
+	}
+
+	private int getInt(int pos)
+	{
+		return ((bytes[pos] & 0xff) << 24) | ((bytes[pos + 1] & 0xff) << 16) | ((bytes[pos + 2] & 0xff) << 8) | (bytes[pos + 3] & 0xff);
+	}
+
+	private long getLong(int pos)
+	{
+		return ((long) getInt(pos) << 32) | (getInt(pos + 4) & 0xffffffffL);
+	}
+
+	/**
+	 * Sorts the serialized keys by comparing their bytes, without reading them back
+	 */
+	public static class Comparator extends WritableComparator
+	{
+		public Comparator()
+		{
+			super(BeanKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2)
+		{
+			int n1 = WritableUtils.decodeVIntSize(b1[s1]);
+			int n2 = WritableUtils.decodeVIntSize(b2[s2]);
+			// then the count, and the hash on the end isn't part of the order
+			n1 += WritableUtils.decodeVIntSize(b1[s1 + n1]);
+			n2 += WritableUtils.decodeVIntSize(b2[s2 + n2]);
+			return compareBytes(b1, s1 + n1, l1 - n1 - 8, b2, s2 + n2, l2 - n2 - 8);
+		}
+	}
+
+	/**
+	 * Groups the reducer values by key, looking at the hashes first.  Keys next to each other in the sort often
+	 * start the same, so the bytes are only compared when the hashes match.
+	 * <br> Only good for grouping (it is only asked whether two keys are the same), not for sorting:
+	 * <pre>
+	 * {@code
+	 * job.setGroupingComparatorClass(BeanKey.GroupingComparator.class);
+	 * }
+	 * </pre>
+	 */
+	public static class GroupingComparator extends WritableComparator
+	{
+		public GroupingComparator()
+		{
+			super(BeanKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2)
+		{
+			int c = Long.compare(readLong(b1, s1 + l1 - 8), readLong(b2, s2 + l2 - 8));
+			return c != 0 ? c : COMPARATOR.compare(b1, s1, l1, b2, s2, l2);
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public int compare(WritableComparable a, WritableComparable b)
+		{
+			BeanKey x = (BeanKey) a;
+			BeanKey y = (BeanKey) b;
+			int c = Long.compare(x.getHash(), y.getHash());
+			return c != 0 ? c : x.compareTo(y);
+		}
+	}
+
+	/**
+	 * Sends each key to a reducer by its hash (the HashPartitioner would call {@link #hashCode()}, which is the
+	 * same hash folded to an int):
+	 * <pre>
+	 * {@code
+	 * job.setPartitionerClass(BeanKey.Partitioner.class);
+	 * }
+	 * </pre>
+	 */
+	public static class Partitioner<V> extends org.apache.hadoop.mapreduce.Partitioner<BeanKey, V>
+	{
+		@Override
+		public int getPartition(BeanKey key, V value, int numPartitions)
+		{
+			return (int) ((key.getHash() & Long.MAX_VALUE) % numPartitions);
+		}
+	}
+
+	/**
+	 * How to build the key for some fields of a bean class, worked out once (see {@link BeanSchema#getKeyLayout(String[])})
+	 */
+	static final class Layout
+	{
+		private final String[] fields;
+		private final BeanAccessor[] accessors;
+		private final byte[] tags;
+		// zero based column of each field, -1 if it isn't loaded from the record
+		private final int[] columns;
+
+		Layout(BeanSchema schema, String[] fields)
+		{
+			this.fields = fields.clone();
+			this.accessors = new BeanAccessor[fields.length];
+			this.tags = new byte[fields.length];
+			this.columns = new int[fields.length];
+			for (int i = 0; i < fields.length; i++)
+			{
+				accessors[i] = schema.getAccessor(fields[i]);
+				Integer order = schema.getOrder(fields[i]);
+				columns[i] = order == null ? -1 : order - 1;
+				tags[i] = tag(accessors[i]);
+			}
+		}
+
+		private static byte tag(BeanAccessor accessor)
+		{
+			Class<?> type = accessor.getType();
+			if (type == null || !accessor.canGet())
+			{
+				return STRING;
+			}
+			type = BeanAccessor.wrap(type);
+			if (type == Integer.class || type == Short.class || type == Byte.class)
+			{
+				return INT;
+			}
+			if (type == Long.class)
+			{
+				return LONG;
+			}
+			if (type == Double.class || type == Float.class)
+			{
+				return DOUBLE;
+			}
+			if (type == Boolean.class)
+			{
+				return BOOLEAN;
+			}
+			if (type == Date.class)
+			{
+				return DATE;
+			}
+			if (type == BigDecimal.class)
+			{
+				return DECIMAL;
+			}
+			// a String, or anything else by its String value
+			return STRING;
+		}
+
+		boolean isFor(String[] fields)
+		{
+			return Arrays.equals(this.fields, fields);
+		}
+
+		void append(BaseJavaBean bean, BeanKey key)
+		{
+			for (int i = 0; i < fields.length; i++)
+			{
+				BeanAccessor accessor = accessors[i];
+				if (accessor.isPrimitive() && columns[i] >= 0 && bean.isNullColumn(columns[i]) && accessor.isEmpty(accessor.get(bean)))
+				{
+					// same as getValue, a column that didn't get a value is null
+					key.addNull();
+					continue;
+				}
+				switch (tags[i])
+				{
+					case INT:
+						if (accessor.isPrimitive() && accessor.getType() == int.class)
+						{
+							key.add(accessor.getInt(bean));
+						}
+						else
+						{
+							key.add(accessor.get(bean));
+						}
+						break;
+					case LONG:
+						if (accessor.isPrimitive())
+						{
+							key.add(accessor.getLong(bean));
+						}
+						else
+						{
+							key.add(accessor.get(bean));
+						}
+						break;
+					case DOUBLE:
+						if (accessor.getType() == double.class)
+						{
+							key.add(accessor.getDouble(bean));
+						}
+						else
+						{
+							key.add(accessor.get(bean));
+						}
+						break;
+					case BOOLEAN:
+						if (accessor.isPrimitive())
+						{
+							key.add(accessor.getBoolean(bean));
+						}
+						else
+						{
+							key.add(accessor.get(bean));
+						}
+						break;
+					case STRING:
+						if (accessor.getType() == String.class && accessor.canGet())
+						{
+							key.add((String) accessor.get(bean));
+						}
+						else
+						{
+							key.add(bean.getStringValue(fields[i]));
+						}
+						break;
+					default:
+						key.add(accessor.get(bean));
+						break;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package jason.bowles.hadoop.utils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Creates and recycles {@link BaseJavaBean} instances without looking up constructors for every record.
+ *
+ * <p> This is the usual Hadoop Writable trick: instead of <code>new XBean(); loadRecord(line)</code> for every
+ * line, keep one bean per type and load it over and over.
+ * <pre>
+ * {@code
+ * ExampleBean bean = BeanPool.reusable(ExampleBean.class);
+ * for (Text value: values) {
+ *    bean.loadRecord(value);   // everything from the last record is cleared first
+ *    ...
+ * }
+ * }
+ * </pre>
+ * The reusable bean belongs to the current thread and is handed out again on the next call, so don't hold on
+ * to it (put a copy in a collection, or use {@link #newInstance(Class)}).
+ *
+ * <p> A new bean for a record is always made the same way, whether the record is a String or bytes: with the
+ * (String delimiter, String record) constructor if the class has one, otherwise the no argument one and
+ * loadRecord.  When a bean is given a delimiter its out delimiter follows it, unless the bean set its own (the
+ * same thing the BaseJavaBean(String delimiter) constructor does).
+ *
+ * @author id19868
+ */
+public final class BeanPool
+{
+	private static final ClassValue<Factory<?>> FACTORIES = new ClassValue<Factory<?>>()
+	{
+		@Override
+		protected Factory<?> computeValue(Class<?> type)
+		{
+			return new Factory<>(type);
+		}
+	};
+
+	private BeanPool()
+	{
+		super();
+	}
+
+	/**
+	 * Create a new bean using its no argument constructor
+	 * @param type
+	 * @return
+	 */
+	public static <T extends BaseJavaBean> T newInstance(Class<T> type)
+	{
+		return factory(type).create();
+	}
+
+	/**
+	 * Create a new bean and load it with the (String delimiter, String record) constructor
+	 * @param type
+	 * @param delimiter
+	 * @param record
+	 * @return
+	 */
+	public static <T extends BaseJavaBean> T newInstance(Class<T> type, String delimiter, String record)
+	{
+		return factory(type).create(delimiter, record);
+	}
+
+	/**
+	 * The bean of this type that belongs to the current thread, already reset
+	 * @param type
+	 * @return
+	 */
+	public static <T extends BaseJavaBean> T reusable(Class<T> type)
+	{
+		T bean = factory(type).reusable.get();
+		bean.reset();
+		return bean;
+	}
+
+	/**
+	 * Load a record into the current thread's reusable bean of this type
+	 * <br> If the class doesn't have a no argument constructor a new bean is created every time
+	 * @param type
+	 * @param delimiter
+	 * @param record
+	 * @return the loaded bean, only good until the next call for the same type
+	 */
+	public static <T extends BaseJavaBean> T load(Class<T> type, String delimiter, String record)
+	{
+		Factory<T> factory = factory(type);
+		if (factory.noArg == null)
+		{
+			return factory.create(delimiter, record);
+		}
+		T bean = factory.reusable.get();
+		setDelimiter(bean, delimiter);
+		bean.loadRecord(record);
+		return bean;
+	}
+
+	/**
+	 * Create a new bean and load it with the (String delimiter, String record) constructor, or the no argument one
+	 * and {@link BaseJavaBean#loadRecord(String)} if it doesn't have that
+	 * @param type
+	 * @param delimiter
+	 * @param record
+	 * @return
+	 */
+	static <T extends BaseJavaBean> T create(Class<T> type, String delimiter, String record)
+	{
+		Factory<T> factory = factory(type);
+		if (factory.withRecord != null)
+		{
+			return factory.create(delimiter, record);
+		}
+		T bean = factory.create();
+		setDelimiter(bean, delimiter);
+		bean.loadRecord(record);
+		return bean;
+	}
+
+	/**
+	 * Same as {@link #create(Class, String, String)} for a UTF-8 record, it's only loaded straight from the bytes
+	 * (see {@link BaseJavaBean#loadRecord(byte[], int, int)}) when the class has no (String delimiter, String record)
+	 * constructor
+	 * @param type
+	 * @param delimiter
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	static <T extends BaseJavaBean> T newInstance(Class<T> type, String delimiter, byte[] bytes, int offset, int length)
+	{
+		Factory<T> factory = factory(type);
+		if (factory.withRecord != null)
+		{
+			return factory.create(delimiter, new String(bytes, offset, length, StandardCharsets.UTF_8));
+		}
+		T bean = factory.create();
+		setDelimiter(bean, delimiter);
+		bean.loadRecord(bytes, offset, length);
+		return bean;
+	}
+
+	/**
+	 * Same as {@link #load(Class, String, String)} for a UTF-8 record
+	 * @param type
+	 * @param delimiter
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return the loaded bean, only good until the next call for the same type
+	 */
+	static <T extends BaseJavaBean> T load(Class<T> type, String delimiter, byte[] bytes, int offset, int length)
+	{
+		Factory<T> factory = factory(type);
+		if (factory.noArg == null)
+		{
+			return factory.create(delimiter, new String(bytes, offset, length, StandardCharsets.UTF_8));
+		}
+		T bean = factory.reusable.get();
+		setDelimiter(bean, delimiter);
+		bean.loadRecord(bytes, offset, length);
+		return bean;
+	}
+
+	/**
+	 * Give the bean the delimiter its record is in, the out delimiter only follows it if the bean hadn't set
+	 * one of its own
+	 * @param bean
+	 * @param delimiter
+	 */
+	private static void setDelimiter(BaseJavaBean bean, String delimiter)
+	{
+		if (bean.getOutDelimiter().equals(bean.getDelimiter()))
+		{
+			bean.setOutDelimiter(delimiter);
+		}
+		bean.setDelimiter(delimiter);
+	}
+
+	/**
+	 * The delimiter a new bean of this type starts with ({@link BaseJavaBean#getDefaultDelimiter()}), a bean is only
+	 * made to find it the first time
+	 * @param type
+	 * @return
+	 */
+	static String defaultDelimiter(Class<? extends BaseJavaBean> type)
+	{
+		Factory<? extends BaseJavaBean> factory = factory(type);
+		String delimiter = factory.delimiter;
+		if (delimiter == null)
+		{
+			delimiter = factory.create().getDefaultDelimiter();
+			factory.delimiter = delimiter;
+		}
+		return delimiter;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends BaseJavaBean> Factory<T> factory(Class<T> type)
+	{
+		return (Factory<T>) FACTORIES.get(type);
+	}
+
+	/**
+	 * The constructors of one bean class, looked up once
+	 */
+	private static final class Factory<T>
+	{
+		private final Class<T> type;
+		private final Constructor<T> noArg;
+		private final Constructor<T> withRecord;
+		// filled in by defaultDelimiter (a race just works it out twice)
+		private volatile String delimiter;
+		private final ThreadLocal<T> reusable = new ThreadLocal<T>()
+		{
+			@Override
+			protected T initialValue()
+			{
+				return create();
+			}
+		};
+
+		Factory(Class<T> type)
+		{
+			this.type = type;
+			this.noArg = constructor(type);
+			this.withRecord = constructor(type, String.class, String.class);
+		}
+
+		private static <T> Constructor<T> constructor(Class<T> type, Class<?>... params)
+		{
+			try
+			{
+				Constructor<T> cons = type.getDeclaredConstructor(params);
+				cons.setAccessible(true);
+				return cons;
+			}
+			catch (NoSuchMethodException | SecurityException e)
+			{
+				return null;
+			}
+		}
+
+		T create()
+		{
+			if (noArg == null)
+			{
+				throw new IllegalStateException(type.getName() + " needs a no argument constructor");
+			}
+			return newInstance(noArg);
+		}
+
+		T create(String delimiter, String record)
+		{
+			if (withRecord == null)
+			{
+				throw new IllegalStateException(type.getName() + " needs a (String delimiter, String record) constructor");
+			}
+			return newInstance(withRecord, delimiter, record);
+		}
+
+		private T newInstance(Constructor<T> cons, Object... args)
+		{
+			try
+			{
+				return cons.newInstance(args);
+			}
+			catch (InvocationTargetException e)
+			{
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+				{
+					throw (RuntimeException) cause;
+				}
+				throw new IllegalStateException("Unable to create " + type.getName(), cause);
+			}
+			catch (InstantiationException | IllegalAccessException e)
+			{
+				throw new IllegalStateException("Unable to create " + type.getName(), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package jason.bowles.hadoop.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lays out a {@link BaseJavaBean} from {@link Column} annotations on its fields instead of
+ * {@link BaseJavaBean#getLoadFields()} (which can just return null).
+ * <pre>
+ * {@code
+ * @BeanRecord(key={"field1"})
+ * public class ExampleBean extends BaseJavaBean {
+ *    @Column(order=1) private String field1;
+ *    @Column(order=2) private Integer field2;
+ *    @Column(order=3, skip=true) private String field3;
+ *    @Column(order=4, format="yyyyMMdd") private Date field4;
+ *    ...
+ * }
+ * }
+ * </pre>
+ * Compile with {@code javac -processor jason.bowles.hadoop.utils.BeanCodecProcessor} and an ExampleBeanCodec
+ * is generated next to the bean ({@link BeanCodecProcessor}).  When it is on the classpath, loadRecord,
+ * createCSV and createKey use it instead of going through the getters and setters one name at a time.
+ * Without it the bean still works the old way.
+ *
+ * @author id19868
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface BeanRecord
+{
+	/**
+	 * @return the fields the generated codec builds the key from (should match {@link BaseJavaBean#getKeyFields()})
+	 */
+	String[] key() default {};
+}
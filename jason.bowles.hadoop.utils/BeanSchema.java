@@ -0,0 +1,759 @@
+package jason.bowles.hadoop.utils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * The "compiled" layout of a {@link BaseJavaBean} class.
+ *
+ * <p> Everything that used to be rebuilt in the constructor of every single bean (field order, skip flags,
+ * field types, date formats) lives here instead.  A schema is built once per bean class from
+ * {@link BaseJavaBean#getLoadFields()} (or the {@link Column} annotations of a {@link BeanRecord} class) and
+ * cached, so a bean instance only carries its values and a pointer to the schema.
+ *
+ * <p> Schemas are immutable and safe to share between threads.  When a bean customizes itself in the
+ * constructor ({@link BaseJavaBean#addName(String, boolean)}, {@link BaseJavaBean#addDateFormat(String)},
+ * a header record) it gets a derived schema, and those derived schemas are cached too so a constructor
+ * that does the same thing for every record still doesn't allocate anything.
+ *
+ * @author id19868
+ */
+public final class BeanSchema
+{
+	private static final ConcurrentMap<Class<?>, BeanSchema> SCHEMAS = new ConcurrentHashMap<Class<?>, BeanSchema>();
+
+	/* marker for names that don't map to a declared field (ConcurrentHashMap won't hold nulls) */
+	private static final Class<?> NO_FIELD = Void.class;
+	/* marker for a bean class that can't be made without arguments, so there are no defaults to put back */
+	private static final Object[] NO_DEFAULTS = new Object[0];
+	// the schema whose defaults this thread is working out (a constructor that resets a bean can't start it again)
+	private static final ThreadLocal<BeanSchema> CAPTURING = new ThreadLocal<BeanSchema>();
+
+	private final Class<?> beanClass;
+	private final Class<?> fieldClass;
+
+	// field names in the order they were added (what gets written out)
+	private final List<String> fieldList;
+	private final List<String> loadedFieldList;
+	// field names sorted by their load order
+	private final List<String> names;
+	private final Map<String,Integer> beanOrder;
+	private final Set<String> skipList;
+
+	// indexed by column (load order - 1)
+	private final String[] columns;
+	private final boolean[] skipColumn;
+	private final Class<?>[] columnTypes;
+
+	private final String[] dateFormats;
+	private final List<String> addedDateFormats;
+	private final DateParser dateParser;
+	// from @Column(format=...), by column (null where there isn't one)
+	private final Map<String,String> formatMap;
+	private final String[] columnFormats;
+	// the generated codec, null if there isn't one or this layout isn't the annotated one
+	private final BeanCodec<BaseJavaBean> codec;
+
+	private final BeanAccessor[] columnAccessors;
+	private final BeanAccessor[] fieldAccessors;
+	// by column, where its field is in fieldAccessors (-1 if nothing is loaded from it)
+	private final int[] columnFields;
+
+	private final ConcurrentMap<String, Class<?>> classMap = new ConcurrentHashMap<String, Class<?>>();
+	// accessors only depend on the bean class, so derived schemas share them
+	private final ConcurrentMap<String, BeanAccessor> accessors;
+	private final ConcurrentMap<String, BeanAccessor> methodAccessors;
+	private final ConcurrentMap<Object, BeanSchema> derived = new ConcurrentHashMap<Object, BeanSchema>();
+	private final BeanErrors errors;
+	// the bean has its own getDateString(Object, String), so dates can't be formatted around it
+	private final boolean formatsDates;
+	// overrides setJavaBeanField, so every column is loaded through it
+	private final boolean setsFields;
+	// overrides getStringValue or getValue, so every column is written through them
+	private final boolean formatsValues;
+	// overrides loadFromList, so the records are loaded through it
+	private final boolean loadsList;
+	// built the first time a bean is written in binary
+	private volatile BinaryCodec binaryCodec;
+	// the last key layout asked for (a bean class almost always uses the same one)
+	private volatile BeanKey.Layout keyLayout;
+	// what the fields of a new bean start with, worked out the first time a bean is reset
+	private volatile Object[] defaults;
+
+	private BeanSchema(Builder builder)
+	{
+		this.beanClass = builder.beanClass;
+		this.fieldClass = builder.fieldClass;
+		this.accessors = builder.accessors;
+		this.methodAccessors = builder.methodAccessors;
+		this.errors = BeanErrors.forClass(beanClass);
+		this.formatsDates = overrides(beanClass, "getDateString", Object.class, String.class);
+		this.setsFields = overrides(beanClass, "setJavaBeanField", String.class, String.class);
+		this.formatsValues = overrides(beanClass, "getStringValue", String.class) || overrides(beanClass, "getValue", String.class);
+		this.loadsList = overrides(beanClass, "loadFromList", String[].class, Integer.class);
+		this.fieldList = Collections.unmodifiableList(new ArrayList<String>(builder.fieldList));
+
+		List<String> loaded = new ArrayList<String>();
+		for (String field: builder.fieldList)
+		{
+			if (!builder.skipList.contains(field))
+			{
+				loaded.add(field);
+			}
+		}
+		this.loadedFieldList = Collections.unmodifiableList(loaded);
+		this.fieldAccessors = new BeanAccessor[fieldList.size()];
+		for (int i = 0; i < fieldAccessors.length; i++)
+		{
+			fieldAccessors[i] = getAccessor(fieldList.get(i));
+		}
+		this.beanOrder = Collections.unmodifiableMap(new HashMap<String,Integer>(builder.beanOrder));
+		this.skipList = Collections.unmodifiableSet(new HashSet<String>(builder.skipList));
+
+		int numColumns = builder.orderBean.isEmpty() ? 0 : Collections.max(builder.orderBean.keySet());
+		this.columns = new String[numColumns];
+		this.skipColumn = new boolean[numColumns];
+		this.columnTypes = new Class<?>[numColumns];
+		this.columnAccessors = new BeanAccessor[numColumns];
+		this.columnFields = new int[numColumns];
+		List<String> sorted = new ArrayList<String>();
+		for (int i = 0; i < numColumns; i++)
+		{
+			String name = builder.orderBean.get(i + 1);
+			columns[i] = name;
+			if (name != null)
+			{
+				sorted.add(name);
+				skipColumn[i] = builder.skipList.contains(name);
+				columnTypes[i] = getClassForName(name);
+				columnAccessors[i] = getAccessor(name);
+				columnFields[i] = fieldList.indexOf(name);
+			}
+			else
+			{
+				skipColumn[i] = true;
+				columnFields[i] = -1;
+			}
+		}
+		this.names = Collections.unmodifiableList(sorted);
+		this.addedDateFormats = Collections.unmodifiableList(new ArrayList<String>(builder.addedDateFormats));
+		List<String> formats = new ArrayList<String>(builder.addedDateFormats);
+		for (String format: BaseJavaBean.getParseDateFormats())
+		{
+			if (!formats.contains(format))
+			{
+				formats.add(format);
+			}
+		}
+		// column formats go last, they are only the first choice for their own column
+		this.formatMap = Collections.unmodifiableMap(new HashMap<String,String>(builder.columnFormats));
+		this.columnFormats = new String[numColumns];
+		for (int i = 0; i < numColumns; i++)
+		{
+			columnFormats[i] = columns[i] == null ? null : formatMap.get(columns[i]);
+			if (columnFormats[i] != null && !formats.contains(columnFormats[i]))
+			{
+				formats.add(columnFormats[i]);
+			}
+		}
+		this.dateFormats = formats.toArray(new String[0]);
+		this.dateParser = new DateParser(dateFormats, numColumns);
+		for (int i = 0; i < numColumns; i++)
+		{
+			if (columnFormats[i] != null)
+			{
+				dateParser.declare(i, columnFormats[i]);
+			}
+		}
+		this.codec = BeanCodecs.forSchema(this, fieldClass);
+	}
+
+	/**
+	 * Look up (or build the first time) the schema for the class of the bean passed in
+	 * @param bean
+	 * @return the shared schema for that class
+	 */
+	public static BeanSchema forBean(BaseJavaBean bean)
+	{
+		BeanSchema schema = SCHEMAS.get(bean.getClass());
+		if (schema == null)
+		{
+			// built outside the map, it runs the bean's own code (which can make other beans) and compiles the codec
+			schema = Builder.forBean(bean).build();
+			BeanSchema existing = SCHEMAS.putIfAbsent(bean.getClass(), schema);
+			if (existing != null)
+			{
+				schema = existing;
+			}
+		}
+		return schema;
+	}
+
+	/**
+	 * The schema for a bean that is laid out by a header record instead of {@link BaseJavaBean#getLoadFields()}
+	 * @param bean
+	 * @param headers
+	 * @return
+	 */
+	static BeanSchema forHeader(BaseJavaBean bean, String[] headers)
+	{
+		return forBean(bean).derive(Arrays.asList(headers), () -> new Builder(bean, headers).build());
+	}
+
+	/**
+	 * Same thing as {@link BaseJavaBean#addName(String, Integer, boolean)} except it hands back a new schema
+	 * @param name
+	 * @param order null means "the next one"
+	 * @param skip
+	 * @return
+	 */
+	BeanSchema withName(String name, Integer order, boolean skip)
+	{
+		return derive(Arrays.asList("name", name, order, skip), () -> new Builder(this).addName(name, order, skip).build());
+	}
+
+	/**
+	 * Hand back a schema that tries the date format passed in before the ones already here
+	 * @param format
+	 * @return
+	 */
+	BeanSchema withDateFormat(String format)
+	{
+		return derive(Arrays.asList("date", format), () -> new Builder(this).addDateFormat(format).build());
+	}
+
+	private BeanSchema derive(Object key, Supplier<BeanSchema> builder)
+	{
+		BeanSchema schema = derived.get(key);
+		if (schema == null)
+		{
+			schema = builder.get();
+			BeanSchema existing = derived.putIfAbsent(key, schema);
+			if (existing != null)
+			{
+				schema = existing;
+			}
+		}
+		return schema;
+	}
+
+	public Class<?> getBeanClass()
+	{
+		return beanClass;
+	}
+
+	/**
+	 * @return number of columns in a record, including any that are skipped
+	 */
+	public int getColumnCount()
+	{
+		return columns.length;
+	}
+
+	/**
+	 * @param column zero based position in the record
+	 * @return the field name loaded from that column, or null if nothing is loaded from it
+	 */
+	public String getColumnName(int column)
+	{
+		return column < columns.length ? columns[column] : null;
+	}
+
+	/**
+	 * @param column zero based position in the record
+	 * @return true if the column should not be parsed
+	 */
+	public boolean isSkipped(int column)
+	{
+		return column >= columns.length || skipColumn[column];
+	}
+
+	/**
+	 * @param column zero based position in the record
+	 * @return the declared type of the field for that column (null if there isn't one)
+	 */
+	public Class<?> getColumnType(int column)
+	{
+		return column < columns.length ? columnTypes[column] : null;
+	}
+
+	/**
+	 * @param column zero based position in the record
+	 * @return the getter/setter of the field for that column (null if nothing is loaded from it)
+	 */
+	public BeanAccessor getColumnAccessor(int column)
+	{
+		return column < columns.length ? columnAccessors[column] : null;
+	}
+
+	/**
+	 * @return the getters/setters of every field, in the same order as {@link #getFields(boolean)}
+	 */
+	BeanAccessor[] getFieldAccessors()
+	{
+		return fieldAccessors;
+	}
+
+	/**
+	 * The values the fields of a new bean start with (their initializers and whatever the no argument constructor
+	 * sets), in the same order as {@link #getFieldAccessors()}.  One bean is made to find them the first time, and
+	 * the values are shared (a mutable default like a Date is the same object in every bean that is reset).
+	 * @return null if the bean class can't be made without arguments
+	 */
+	Object[] getDefaults()
+	{
+		Object[] values = defaults;
+		if (values == null && CAPTURING.get() != this)
+		{
+			values = captureDefaults();
+			defaults = values;
+		}
+		return values == NO_DEFAULTS ? null : values;
+	}
+
+	/**
+	 * @param column zero based
+	 * @return true if there is a default for the column's field ({@link #getDefault(int)}), false if it is unknown
+	 */
+	boolean hasDefault(int column)
+	{
+		return getDefaults() != null && columnFields[column] >= 0;
+	}
+
+	/**
+	 * @param column zero based
+	 * @return the value a new bean starts with in the column's field, see {@link #getDefaults()}
+	 */
+	Object getDefault(int column)
+	{
+		return getDefaults()[columnFields[column]];
+	}
+
+	private Object[] captureDefaults()
+	{
+		BeanSchema outer = CAPTURING.get();
+		CAPTURING.set(this);
+		try
+		{
+			BaseJavaBean prototype = BeanPool.newInstance(beanClass.asSubclass(BaseJavaBean.class));
+			Object[] values = new Object[fieldAccessors.length];
+			for (int i = 0; i < values.length; i++)
+			{
+				try
+				{
+					values[i] = fieldAccessors[i].get(prototype);
+				}
+				catch (RuntimeException e)
+				{
+					// same as a getter that couldn't be called
+				}
+			}
+			return values;
+		}
+		catch (RuntimeException e)
+		{
+			return NO_DEFAULTS;
+		}
+		finally
+		{
+			CAPTURING.set(outer);
+		}
+	}
+
+	/**
+	 * The getter/setter for any field of the bean, looked up the first time it is asked for
+	 * @param name
+	 * @return
+	 */
+	public BeanAccessor getAccessor(String name)
+	{
+		BeanAccessor accessor = accessors.get(name);
+		if (accessor == null)
+		{
+			accessor = BeanAccessor.forField(beanClass, name, getClassForName(name));
+			BeanAccessor existing = accessors.putIfAbsent(name, accessor);
+			if (existing != null)
+			{
+				accessor = existing;
+			}
+		}
+		return accessor;
+	}
+
+	/**
+	 * Same as {@link #getAccessor(String)}, for callers that only have the getter or setter method name
+	 * @param methodName
+	 * @return
+	 */
+	BeanAccessor getMethodAccessor(String methodName)
+	{
+		BeanAccessor accessor = methodAccessors.get(methodName);
+		if (accessor == null)
+		{
+			accessor = methodName.startsWith("set") ? BeanAccessor.forSetter(beanClass, methodName)
+					: BeanAccessor.forGetter(beanClass, methodName);
+			BeanAccessor existing = methodAccessors.putIfAbsent(methodName, accessor);
+			if (existing != null)
+			{
+				accessor = existing;
+			}
+		}
+		return accessor;
+	}
+
+	/**
+	 * @param name
+	 * @return the 1 based load order of the field, or null if it isn't loaded
+	 */
+	public Integer getOrder(String name)
+	{
+		return beanOrder.get(name);
+	}
+
+	public boolean isSkipped(String name)
+	{
+		return skipList.contains(name);
+	}
+
+	/**
+	 * @return the field names sorted by load order
+	 */
+	public List<String> getNames()
+	{
+		return names;
+	}
+
+	/**
+	 * @param includeSkipFields
+	 * @return the field names in the order they were added
+	 */
+	public List<String> getFields(boolean includeSkipFields)
+	{
+		return includeSkipFields ? fieldList : loadedFieldList;
+	}
+
+	/**
+	 * Any formats added by the bean come first, then the built in ones
+	 * @return
+	 */
+	public String[] getDateFormats()
+	{
+		return dateFormats.clone();
+	}
+
+	/**
+	 * @param column zero based position in the record
+	 * @return the {@link Column#format()} of a date column, null if it doesn't have one
+	 */
+	public String getColumnFormat(int column)
+	{
+		return column >= 0 && column < columnFormats.length ? columnFormats[column] : null;
+	}
+
+	/**
+	 * @return the bad data counts for the bean class
+	 */
+	public BeanErrors getErrors()
+	{
+		return errors;
+	}
+
+	/**
+	 * @return the generated codec to write a record or key with, null if there isn't one or the bean overrides
+	 *         {@link BaseJavaBean#getStringValue(String)} or {@link BaseJavaBean#getValue(String)} (the codec calls
+	 *         the getters itself)
+	 */
+	BeanCodec<BaseJavaBean> getCodec()
+	{
+		return formatsValues ? null : codec;
+	}
+
+	/**
+	 * @return the generated codec to load a record with, null if there isn't one or the bean overrides
+	 *         {@link BaseJavaBean#setJavaBeanField(String, String)} (the codec calls the setters itself)
+	 */
+	BeanCodec<BaseJavaBean> getLoadCodec()
+	{
+		return setsFields ? null : codec;
+	}
+
+	/**
+	 * @return the binary form of the bean, for {@link BaseJavaBean#write(java.io.DataOutput)}
+	 */
+	BinaryCodec getBinaryCodec()
+	{
+		BinaryCodec codec = binaryCodec;
+		if (codec == null)
+		{
+			// two threads might both build one, they're the same
+			codec = new BinaryCodec(this);
+			binaryCodec = codec;
+		}
+		return codec;
+	}
+
+	/**
+	 * @param fields
+	 * @return how to build a {@link BeanKey} from the fields
+	 */
+	BeanKey.Layout getKeyLayout(String[] fields)
+	{
+		BeanKey.Layout layout = keyLayout;
+		if (layout == null || !layout.isFor(fields))
+		{
+			layout = new BeanKey.Layout(this, fields);
+			keyLayout = layout;
+		}
+		return layout;
+	}
+
+	/**
+	 * @return true if the bean formats its own dates (overrides {@link BaseJavaBean#getDateString(Object, String)})
+	 */
+	boolean formatsDates()
+	{
+		return formatsDates;
+	}
+
+	/**
+	 * @return true if the bean overrides {@link BaseJavaBean#setJavaBeanField(String, String)}, every column it
+	 *         loads has to go through that instead of straight to the setter
+	 */
+	boolean setsFields()
+	{
+		return setsFields;
+	}
+
+	/**
+	 * @return true if the bean overrides {@link BaseJavaBean#getStringValue(String)} or
+	 *         {@link BaseJavaBean#getValue(String)}, every column it writes has to go through those
+	 */
+	boolean formatsValues()
+	{
+		return formatsValues;
+	}
+
+	/**
+	 * @return true if the bean overrides {@link BaseJavaBean#loadFromList(String[], Integer)}, a whole record has
+	 *         to be split into Strings and handed to it
+	 */
+	boolean loadsList()
+	{
+		return loadsList;
+	}
+
+	/**
+	 * @return true if a class between the bean and BaseJavaBean declares the method (it can be protected)
+	 */
+	private static boolean overrides(Class<?> beanClass, String name, Class<?>... parameterTypes)
+	{
+		for (Class<?> clzz = beanClass; clzz != null && clzz != BaseJavaBean.class; clzz = clzz.getSuperclass())
+		{
+			try
+			{
+				clzz.getDeclaredMethod(name, parameterTypes);
+				return true;
+			}
+			catch (NoSuchMethodException e)
+			{
+				// not this one, try its parent
+			}
+			catch (SecurityException e)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the parser for {@link #getDateFormats()}, it remembers which format each column uses
+	 */
+	public DateParser getDateParser()
+	{
+		return dateParser;
+	}
+
+	/**
+	 * Look up the declared type of a field, the answer is cached for the life of the schema
+	 * @param name
+	 * @return the type, or null if no field exists by that name
+	 */
+	public Class<?> getClassForName(String name)
+	{
+		Class<?> clzz = classMap.get(name);
+		if (clzz == null)
+		{
+			clzz = resolveType(name);
+			classMap.putIfAbsent(name, clzz);
+		}
+		return clzz == NO_FIELD ? null : clzz;
+	}
+
+	private Class<?> resolveType(String name)
+	{
+		try
+		{
+			Field field = fieldClass.getDeclaredField(name);
+			return field.getType();
+		}
+		catch (NoSuchFieldException | SecurityException e)
+		{
+			return NO_FIELD;
+		}
+	}
+
+	/**
+	 * Mutable scratch space used to put a schema together, this is the old addName logic
+	 */
+	private static final class Builder
+	{
+		private final Class<?> beanClass;
+		private final Class<?> fieldClass;
+		private final ConcurrentMap<String, BeanAccessor> accessors;
+		private final ConcurrentMap<String, BeanAccessor> methodAccessors;
+		private final Map<String,Integer> beanOrder = new HashMap<String,Integer>();
+		private final Map<Integer,String> orderBean = new HashMap<Integer,String>();
+		private final List<String> fieldList = new ArrayList<String>();
+		private final Set<String> skipList = new HashSet<String>();
+		private final List<String> addedDateFormats = new ArrayList<String>();
+		private final Map<String,String> columnFormats = new HashMap<String,String>();
+		private int numLastUsed = 0;
+
+		/**
+		 * Lay out the bean from getLoadFields, or from the annotations of a {@link BeanRecord} class
+		 */
+		static Builder forBean(BaseJavaBean bean)
+		{
+			Class<?> fieldClass = bean.getJavaBeanClass();
+			if (!fieldClass.isAnnotationPresent(BeanRecord.class))
+			{
+				return new Builder(bean, bean.getLoadFields());
+			}
+			List<Field> fields = new ArrayList<Field>();
+			for (Field field: fieldClass.getDeclaredFields())
+			{
+				if (field.isAnnotationPresent(Column.class))
+				{
+					fields.add(field);
+				}
+			}
+			fields.sort(Comparator.comparingInt(f -> f.getAnnotation(Column.class).order()));
+			Builder builder = new Builder(bean, null);
+			for (Field field: fields)
+			{
+				Column column = field.getAnnotation(Column.class);
+				if (column.order() < 1 || builder.orderBean.containsKey(column.order()))
+				{
+					throw new IllegalArgumentException("Bad column order " + column.order() + " on " + fieldClass.getName() + "." + field.getName());
+				}
+				builder.addName(field.getName(), column.order(), column.skip());
+				if (!column.format().isEmpty())
+				{
+					builder.columnFormats.put(field.getName(), column.format());
+				}
+			}
+			return builder;
+		}
+
+		Builder(BaseJavaBean bean, String[] headers)
+		{
+			this.beanClass = bean.getClass();
+			this.fieldClass = bean.getJavaBeanClass();
+			this.accessors = new ConcurrentHashMap<String, BeanAccessor>();
+			this.methodAccessors = new ConcurrentHashMap<String, BeanAccessor>();
+			if (headers != null)
+			{
+				for (String val: headers)
+				{
+					addName(val, null, false);
+				}
+			}
+		}
+
+		Builder(BeanSchema schema)
+		{
+			this.beanClass = schema.beanClass;
+			this.fieldClass = schema.fieldClass;
+			this.accessors = schema.accessors;
+			this.methodAccessors = schema.methodAccessors;
+			this.beanOrder.putAll(schema.beanOrder);
+			for (Map.Entry<String,Integer> entry: schema.beanOrder.entrySet())
+			{
+				this.orderBean.put(entry.getValue(), entry.getKey());
+				numLastUsed = Math.max(numLastUsed, entry.getValue());
+			}
+			this.fieldList.addAll(schema.fieldList);
+			this.skipList.addAll(schema.skipList);
+			this.addedDateFormats.addAll(schema.addedDateFormats);
+			this.columnFormats.putAll(schema.formatMap);
+		}
+
+		Builder addDateFormat(String format)
+		{
+			// added formats go in front of the built in ones, in the order they were added
+			if (!addedDateFormats.contains(format))
+			{
+				addedDateFormats.add(format);
+			}
+			return this;
+		}
+
+		Builder addName(String name, Integer order, boolean skip)
+		{
+			if (order == null)
+			{
+				order = ++numLastUsed;
+			}
+			if (orderBean.containsKey(order))
+			{
+				String newName = name;
+				String oldName = orderBean.get(order);
+				orderBean.put(order,newName);
+				beanOrder.put(newName, order);
+				int i;
+				for (i = (order+1); orderBean.containsKey(i); i++)
+				{
+					newName = oldName;
+					oldName = orderBean.get(i);
+					orderBean.put(i, newName);
+					beanOrder.put(newName, i);
+				}
+				numLastUsed = i;
+				orderBean.put(i, oldName);
+				beanOrder.put(oldName, i);
+			}
+			else
+			{
+				numLastUsed = Math.max(numLastUsed, order);
+				beanOrder.put(name, order);
+				orderBean.put(order, name);
+			}
+			if (skip)
+			{
+				skipList.add(name);
+			}
+			if (!fieldList.contains(name))
+			{
+				fieldList.add(name);
+			}
+			return this;
+		}
+
+		BeanSchema build()
+		{
+			return new BeanSchema(this);
+		}
+	}
+}
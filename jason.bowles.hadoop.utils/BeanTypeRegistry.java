@@ -0,0 +1,309 @@
+package jason.bowles.hadoop.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * The bean types that are mixed together in one stream of records (a reducer that joins several files), each
+ * with a small number for a tag.
+ *
+ * <p> Instead of {@link BaseJavaBean#getIdentifierRecord()} (the class name, a ~, then the record) the mapper
+ * writes {@link #getTaggedRecord(BaseJavaBean)}, the tag, a ~, then the record:
+ * <pre>
+ * {@code
+ * static final BeanTypeRegistry TYPES = new BeanTypeRegistry(Arrays.asList(OrderBean.class, CustomerBean.class));
+ *
+ * // map
+ * TYPES.getTaggedRecord(bean, value);
+ * context.write(key, value);
+ *
+ * // reduce
+ * for (Text value: values) {
+ *    BaseJavaBean bean = TYPES.load(value);
+ *    ...
+ * }
+ * }
+ * </pre>
+ * Finding the type of a record is then reading a number and an array lookup, and each type's delimiter and
+ * constructors are looked up once when the registry is made (not for every record).  Identifier records with the
+ * class name can still be loaded, they just go through a map.
+ *
+ * <p> The tag is the type's place in the list it was made with, so the side that writes the records and the side
+ * that reads them need the same list in the same order.  A registry doesn't change once it's made, share it.
+ *
+ * @author id19868
+ */
+public final class BeanTypeRegistry
+{
+	private final List<Class<? extends BaseJavaBean>> types;
+	private final String[] delimiters;
+	// the tag and the ~ that start a tagged record
+	private final String[] prefixes;
+	private final byte[][] prefixBytes;
+	// the first tag of each tag's type (they're only different for a type that is in the list twice)
+	private final int[] firstTags;
+	private final Map<Class<?>, Integer> tags = new HashMap<Class<?>, Integer>();
+	// lower case class name -> tag, for identifier records
+	private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+	/**
+	 * @param types the tag of each type is its index (a type that is there twice keeps the first one)
+	 */
+	public BeanTypeRegistry(List<Class<? extends BaseJavaBean>> types)
+	{
+		super();
+		this.types = new ArrayList<Class<? extends BaseJavaBean>>(types);
+		int count = types.size();
+		this.delimiters = new String[count];
+		this.prefixes = new String[count];
+		this.prefixBytes = new byte[count][];
+		this.firstTags = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			Class<? extends BaseJavaBean> type = this.types.get(i);
+			delimiters[i] = BaseJavaBean.getDelimiter(type);
+			prefixes[i] = i + "~";
+			prefixBytes[i] = prefixes[i].getBytes(StandardCharsets.UTF_8);
+			tags.putIfAbsent(type, i);
+			names.putIfAbsent(type.getName().toLowerCase(Locale.ROOT), i);
+			firstTags[i] = tags.get(type);
+		}
+	}
+
+	/**
+	 * @return the number of types
+	 */
+	public int size()
+	{
+		return types.size();
+	}
+
+	/**
+	 * @param tag
+	 * @return the type with the tag
+	 */
+	public Class<? extends BaseJavaBean> getType(int tag)
+	{
+		return types.get(tag);
+	}
+
+	/**
+	 * @param type
+	 * @return its tag, -1 if it isn't registered
+	 */
+	public int getTag(Class<?> type)
+	{
+		Integer tag = tags.get(type);
+		return tag == null ? -1 : tag.intValue();
+	}
+
+	/**
+	 * @param tag
+	 * @return the delimiter the records of this type are loaded with
+	 */
+	public String getDelimiter(int tag)
+	{
+		return delimiters[tag];
+	}
+
+	private int tagOf(BaseJavaBean bean)
+	{
+		int tag = getTag(bean.getClass());
+		if (tag < 0)
+		{
+			throw new IllegalArgumentException(bean.getClass().getName() + " isn't registered");
+		}
+		return tag;
+	}
+
+	/**
+	 * The record the bean was loaded from, with its tag in front (the short form of {@link BaseJavaBean#getIdentifierRecord()})
+	 * @param bean
+	 * @return
+	 * @throws IllegalArgumentException if the bean's type isn't registered
+	 */
+	public String getTaggedRecord(BaseJavaBean bean)
+	{
+		String record = bean.getFullRecord();
+		return prefixes[tagOf(bean)] + (record == null ? "" : record);
+	}
+
+	/**
+	 * Same as {@link #getTaggedRecord(BaseJavaBean)}, into the text (what was in it is replaced)
+	 * @param bean
+	 * @param text
+	 * @throws IllegalArgumentException if the bean's type isn't registered
+	 */
+	public void getTaggedRecord(BaseJavaBean bean, Text text)
+	{
+		byte[] prefix = prefixBytes[tagOf(bean)];
+		text.set(prefix, 0, prefix.length);
+		bean.appendFullRecord(text);
+	}
+
+	/**
+	 * @param rec a tagged or identifier record
+	 * @return the tag of its type (its first one, same as {@link #getTag(Class)}), -1 if it isn't one of these types
+	 */
+	public int getTag(String rec)
+	{
+		int split = rec.indexOf('~');
+		if (split <= 0)
+		{
+			return -1;
+		}
+		if (isDigit(rec.charAt(0)))
+		{
+			int tag = 0;
+			for (int i = 0; i < split; i++)
+			{
+				char c = rec.charAt(i);
+				if (!isDigit(c) || tag > types.size())
+				{
+					return -1;
+				}
+				tag = tag * 10 + (c - '0');
+			}
+			return tag < types.size() ? firstTags[tag] : -1;
+		}
+		return byName(rec.substring(0, split));
+	}
+
+	/**
+	 * @param rec a tagged or identifier record (UTF-8)
+	 * @return the tag of its type (its first one, same as {@link #getTag(Class)}), -1 if it isn't one of these types
+	 */
+	public int getTag(Text rec)
+	{
+		byte[] bytes = rec.getBytes();
+		int length = rec.getLength();
+		int split = split(bytes, length);
+		if (split <= 0)
+		{
+			return -1;
+		}
+		if (isDigit(bytes[0]))
+		{
+			int tag = 0;
+			for (int i = 0; i < split; i++)
+			{
+				if (!isDigit(bytes[i]) || tag > types.size())
+				{
+					return -1;
+				}
+				tag = tag * 10 + (bytes[i] - '0');
+			}
+			return tag < types.size() ? firstTags[tag] : -1;
+		}
+		return byName(new String(bytes, 0, split, StandardCharsets.UTF_8));
+	}
+
+	private int byName(String name)
+	{
+		Integer tag = names.get(name.toLowerCase(Locale.ROOT));
+		return tag == null ? -1 : tag.intValue();
+	}
+
+	private static int split(byte[] bytes, int length)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			if (bytes[i] == '~')
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isDigit(int c)
+	{
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Load a tagged or identifier record into a new bean of its type
+	 * @param rec
+	 * @return the bean, null if the record isn't one of these types
+	 */
+	public BaseJavaBean load(String rec)
+	{
+		int tag = getTag(rec);
+		return tag < 0 ? null : load(tag, rec, false);
+	}
+
+	/**
+	 * Load a tagged or identifier record into a new bean of its type, straight from the bytes
+	 * @param rec
+	 * @return the bean, null if the record isn't one of these types
+	 */
+	public BaseJavaBean load(Text rec)
+	{
+		int tag = getTag(rec);
+		return tag < 0 ? null : load(tag, rec, false);
+	}
+
+	/**
+	 * Load a tagged or identifier record into the current thread's reusable bean of its type (see {@link BeanPool#load(Class, String, String)})
+	 * @param rec
+	 * @return the bean, only good until the next record of the same type, null if the record isn't one of these types
+	 */
+	public BaseJavaBean loadReusable(String rec)
+	{
+		int tag = getTag(rec);
+		return tag < 0 ? null : load(tag, rec, true);
+	}
+
+	/**
+	 * Same as {@link #loadReusable(String)}, straight from the bytes
+	 * @param rec
+	 * @return the bean, only good until the next record of the same type, null if the record isn't one of these types
+	 */
+	public BaseJavaBean loadReusable(Text rec)
+	{
+		int tag = getTag(rec);
+		return tag < 0 ? null : load(tag, rec, true);
+	}
+
+	/**
+	 * Load a record that has already been tagged with {@link #getTag(String)}
+	 * @param tag
+	 * @param rec
+	 * @param reusable true for the thread's reusable bean, false for a new one
+	 * @return
+	 */
+	BaseJavaBean load(int tag, String rec, boolean reusable)
+	{
+		String record = rec.substring(rec.indexOf('~') + 1);
+		if (reusable)
+		{
+			return BeanPool.load(types.get(tag), delimiters[tag], record);
+		}
+		return BeanPool.create(types.get(tag), delimiters[tag], record);
+	}
+
+	/**
+	 * Load a record that has already been tagged with {@link #getTag(Text)}
+	 * @param tag
+	 * @param rec
+	 * @param reusable true for the thread's reusable bean, false for a new one
+	 * @return
+	 */
+	BaseJavaBean load(int tag, Text rec, boolean reusable)
+	{
+		byte[] bytes = rec.getBytes();
+		int start = split(bytes, rec.getLength()) + 1;
+		int length = rec.getLength() - start;
+		if (reusable)
+		{
+			return BeanPool.load(types.get(tag), delimiters[tag], bytes, start, length);
+		}
+		return BeanPool.newInstance(types.get(tag), delimiters[tag], bytes, start, length);
+	}
+}
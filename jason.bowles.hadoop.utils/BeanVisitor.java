@@ -0,0 +1,181 @@
+package jason.bowles.hadoop.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * Hands the values of a reducer to a handler for their type, one at a time, instead of copying them all into
+ * a {@link JavaBeanMap} first.
+ * <pre>
+ * {@code
+ * BeanVisitor visitor = new BeanVisitor(TYPES)
+ *    .buffer(CustomerBean.class)
+ *    .on(OrderBean.class, order -> ...);
+ *
+ * // reduce
+ * visitor.visit(values);
+ * List<CustomerBean> customers = visitor.getBuffered(CustomerBean.class);
+ * }
+ * </pre>
+ * The values are tagged records (or identifier records, see {@link BeanTypeRegistry}) and each one is loaded
+ * straight from the Text's bytes, so nothing is copied into a String.  A type with a handler is loaded into the
+ * thread's reusable bean of that type (see {@link BeanPool}), which the next value of the same type overwrites:
+ * copy anything you keep.  Only the types that are buffered get a new bean for each value and are held, so a
+ * key with millions of values only costs the memory of the types that need to be kept (the small side of a
+ * join).  A value of a type with no handler that isn't buffered isn't loaded at all.
+ *
+ * <p> Not thread-safe, make one per reducer (it can be reused for every key).
+ *
+ * @author id19868
+ */
+public final class BeanVisitor
+{
+	private final BeanTypeRegistry registry;
+	// by tag
+	private final Consumer<BaseJavaBean>[] handlers;
+	private final List<BaseJavaBean>[] buffers;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public BeanVisitor(BeanTypeRegistry registry)
+	{
+		super();
+		this.registry = registry;
+		this.handlers = new Consumer[registry.size()];
+		this.buffers = new List[registry.size()];
+	}
+
+	private int tag(Class<?> type)
+	{
+		int tag = registry.getTag(type);
+		if (tag < 0)
+		{
+			throw new IllegalArgumentException(type.getName() + " isn't registered");
+		}
+		return tag;
+	}
+
+	/**
+	 * Set the handler for a type (a type that is also buffered gets its new bean, not the reusable one)
+	 * @param type
+	 * @param handler
+	 * @return this
+	 * @throws IllegalArgumentException if the type isn't in the registry
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends BaseJavaBean> BeanVisitor on(Class<T> type, Consumer<? super T> handler)
+	{
+		handlers[tag(type)] = (Consumer<BaseJavaBean>) handler;
+		return this;
+	}
+
+	/**
+	 * Keep the beans of this type from each {@link #visit(Iterable)}, see {@link #getBuffered(Class)}
+	 * @param type
+	 * @return this
+	 * @throws IllegalArgumentException if the type isn't in the registry
+	 */
+	public BeanVisitor buffer(Class<? extends BaseJavaBean> type)
+	{
+		int tag = tag(type);
+		if (buffers[tag] == null)
+		{
+			buffers[tag] = new ArrayList<BaseJavaBean>();
+		}
+		return this;
+	}
+
+	/**
+	 * The beans of a buffered type from the last {@link #visit(Iterable)}, in the order they came
+	 * <br> The next visit clears it, copy the list if you need it after that
+	 * @param type
+	 * @return an empty list if the type isn't buffered
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends BaseJavaBean> List<T> getBuffered(Class<T> type)
+	{
+		List<BaseJavaBean> buffer = buffers[tag(type)];
+		return buffer == null ? Collections.<T>emptyList() : (List<T>) buffer;
+	}
+
+	/**
+	 * Empty the buffers (done at the start of every visit)
+	 */
+	public void clear()
+	{
+		for (List<BaseJavaBean> buffer: buffers)
+		{
+			if (buffer != null)
+			{
+				buffer.clear();
+			}
+		}
+	}
+
+	/**
+	 * Load and hand off each value (a reducer's values)
+	 * @param values tagged or identifier records, the ones that aren't one of the registry's types are skipped
+	 */
+	public void visit(Iterable<Text> values)
+	{
+		clear();
+		for (Text value: values)
+		{
+			int tag = registry.getTag(value);
+			if (tag >= 0)
+			{
+				dispatch(tag, null, value);
+			}
+		}
+	}
+
+	/**
+	 * Same as {@link #visit(Iterable)} for records that are already Strings
+	 * @param recs
+	 */
+	public void visitRecords(Iterable<String> recs)
+	{
+		clear();
+		for (String rec: recs)
+		{
+			int tag = registry.getTag(rec);
+			if (tag >= 0)
+			{
+				dispatch(tag, rec, null);
+			}
+		}
+	}
+
+	/**
+	 * Buffer and / or hand off one record, it's only loaded if something wants it
+	 * @param tag
+	 * @param rec the record if it's a String, otherwise null
+	 * @param value the record if it's a Text, otherwise null
+	 */
+	private void dispatch(int tag, String rec, Text value)
+	{
+		Consumer<BaseJavaBean> handler = handlers[tag];
+		List<BaseJavaBean> buffer = buffers[tag];
+		if (buffer != null)
+		{
+			BaseJavaBean bean = load(tag, rec, value, false);
+			buffer.add(bean);
+			if (handler != null)
+			{
+				handler.accept(bean);
+			}
+		}
+		else if (handler != null)
+		{
+			handler.accept(load(tag, rec, value, true));
+		}
+	}
+
+	private BaseJavaBean load(int tag, String rec, Text value, boolean reusable)
+	{
+		return rec != null ? registry.load(tag, rec, reusable) : registry.load(tag, value, reusable);
+	}
+}
@@ -0,0 +1,314 @@
+package jason.bowles.hadoop.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * The binary form of a bean, for {@link BaseJavaBean#write(DataOutput)} and {@link BaseJavaBean#readFields(DataInput)}.
+ *
+ * <p> Every field of the schema ({@link BeanSchema#getFields(boolean)} with the skip fields) is written in order:
+ * <ul>
+ * <li> the number of fields (a vint), so a bean isn't read back with a different layout
+ * <li> a bitmap of the fields that are null, one bit per field
+ * <li> then each field that isn't null: int, long and the Integer / Long fields as vints, double and float as
+ *      they are, booleans as a byte, a Date as its epoch millis (a vlong), a BigDecimal as its scale and unscaled
+ *      bytes, and a String as a vint length and its UTF-8 bytes (same as {@link Text#writeString(DataOutput, String)})
+ * </ul>
+ * Anything else is written as its String value and converted back the same way a record is.  Reading it back
+ * doesn't parse a number or a date, the values go straight into the setters.
+ *
+ * <p> A primitive field is null the same way as for {@link BaseJavaBean#isNull(String)}: its column didn't get a
+ * value, so a 0 that was loaded comes back as a 0 and an empty column comes back empty.
+ *
+ * @author id19868
+ */
+final class BinaryCodec
+{
+	private enum Kind { STRING, INT, LONG, DOUBLE, FLOAT, BOOLEAN, DATE, DECIMAL, TEXT }
+
+	private final String[] names;
+	private final BeanAccessor[] accessors;
+	private final Kind[] kinds;
+	private final boolean[] primitive;
+	// zero based column of each field, -1 if it isn't loaded from the record
+	private final int[] columns;
+
+	BinaryCodec(BeanSchema schema)
+	{
+		List<String> fields = schema.getFields(true);
+		this.names = fields.toArray(new String[0]);
+		this.accessors = schema.getFieldAccessors().clone();
+		this.kinds = new Kind[names.length];
+		this.primitive = new boolean[names.length];
+		this.columns = new int[names.length];
+		for (int i = 0; i < names.length; i++)
+		{
+			Integer order = schema.getOrder(names[i]);
+			columns[i] = order == null ? -1 : order - 1;
+			Class<?> type = accessors[i].getType();
+			primitive[i] = type != null && type.isPrimitive();
+			kinds[i] = kind(accessors[i]);
+		}
+	}
+
+	private static Kind kind(BeanAccessor accessor)
+	{
+		Class<?> type = accessor.getType();
+		if (type == null || !accessor.canGet() || !accessor.canSet())
+		{
+			return Kind.TEXT;
+		}
+		type = BeanAccessor.wrap(type);
+		if (type == String.class)
+		{
+			return Kind.STRING;
+		}
+		if (type == Integer.class)
+		{
+			return Kind.INT;
+		}
+		if (type == Long.class)
+		{
+			return Kind.LONG;
+		}
+		if (type == Double.class)
+		{
+			return Kind.DOUBLE;
+		}
+		if (type == Float.class)
+		{
+			return Kind.FLOAT;
+		}
+		if (type == Boolean.class)
+		{
+			return Kind.BOOLEAN;
+		}
+		if (type == Date.class)
+		{
+			return Kind.DATE;
+		}
+		if (type == BigDecimal.class)
+		{
+			return Kind.DECIMAL;
+		}
+		return Kind.TEXT;
+	}
+
+	void write(BaseJavaBean bean, DataOutput out) throws IOException
+	{
+		int count = names.length;
+		Object[] values = new Object[count];
+		byte[] nulls = new byte[(count + 7) >>> 3];
+		for (int i = 0; i < count; i++)
+		{
+			if (isNull(bean, i, values))
+			{
+				nulls[i >>> 3] |= 1 << (i & 7);
+			}
+		}
+		WritableUtils.writeVInt(out, count);
+		out.write(nulls);
+		for (int i = 0; i < count; i++)
+		{
+			if ((nulls[i >>> 3] & (1 << (i & 7))) == 0)
+			{
+				writeValue(bean, i, values[i], out);
+			}
+		}
+	}
+
+	/**
+	 * @param values where the value of an Object field is kept, so it is only got once
+	 */
+	private boolean isNull(BaseJavaBean bean, int i, Object[] values)
+	{
+		BeanAccessor accessor = accessors[i];
+		if (kinds[i] == Kind.TEXT)
+		{
+			return bean.isNull(names[i]);
+		}
+		if (!primitive[i])
+		{
+			values[i] = accessor.get(bean);
+			return values[i] == null;
+		}
+		if (columns[i] < 0 || !bean.isNullColumn(columns[i]))
+		{
+			return false;
+		}
+		switch (kinds[i])
+		{
+			case INT:
+				return accessor.getInt(bean) == 0;
+			case LONG:
+				return accessor.getLong(bean) == 0;
+			case BOOLEAN:
+				return !accessor.getBoolean(bean);
+			default:
+				return accessor.isEmpty(accessor.get(bean));
+		}
+	}
+
+	private void writeValue(BaseJavaBean bean, int i, Object value, DataOutput out) throws IOException
+	{
+		BeanAccessor accessor = accessors[i];
+		boolean prim = primitive[i];
+		switch (kinds[i])
+		{
+			case STRING:
+				writeString(out, (String) value);
+				break;
+			case INT:
+				WritableUtils.writeVInt(out, prim ? accessor.getInt(bean) : ((Integer) value).intValue());
+				break;
+			case LONG:
+				WritableUtils.writeVLong(out, prim ? accessor.getLong(bean) : ((Long) value).longValue());
+				break;
+			case DOUBLE:
+				out.writeDouble(prim ? accessor.getDouble(bean) : ((Double) value).doubleValue());
+				break;
+			case FLOAT:
+				out.writeFloat(((Float) (prim ? accessor.get(bean) : value)).floatValue());
+				break;
+			case BOOLEAN:
+				out.writeBoolean(prim ? accessor.getBoolean(bean) : ((Boolean) value).booleanValue());
+				break;
+			case DATE:
+				WritableUtils.writeVLong(out, ((Date) value).getTime());
+				break;
+			case DECIMAL:
+				BigDecimal decimal = (BigDecimal) value;
+				WritableUtils.writeVInt(out, decimal.scale());
+				byte[] unscaled = decimal.unscaledValue().toByteArray();
+				WritableUtils.writeVInt(out, unscaled.length);
+				out.write(unscaled);
+				break;
+			default:
+				writeString(out, bean.getStringValue(names[i]));
+				break;
+		}
+	}
+
+	/**
+	 * Set the fields from what {@link #write(BaseJavaBean, DataOutput)} wrote (the bean has been cleared)
+	 */
+	void read(BaseJavaBean bean, DataInput in) throws IOException
+	{
+		int count = WritableUtils.readVInt(in);
+		if (count != names.length)
+		{
+			throw new IOException(bean.getClass().getName() + " was written with " + count + " fields, it has " + names.length);
+		}
+		byte[] nulls = new byte[(count + 7) >>> 3];
+		in.readFully(nulls);
+		for (int i = 0; i < count; i++)
+		{
+			if ((nulls[i >>> 3] & (1 << (i & 7))) == 0)
+			{
+				readValue(bean, i, in);
+				if (columns[i] >= 0)
+				{
+					bean.loaded(columns[i]);
+				}
+			}
+		}
+	}
+
+	private void readValue(BaseJavaBean bean, int i, DataInput in) throws IOException
+	{
+		BeanAccessor accessor = accessors[i];
+		boolean prim = primitive[i];
+		switch (kinds[i])
+		{
+			case STRING:
+				accessor.set(bean, readString(in));
+				break;
+			case INT:
+				int intValue = WritableUtils.readVInt(in);
+				if (prim)
+				{
+					accessor.setInt(bean, intValue);
+				}
+				else
+				{
+					accessor.set(bean, Integer.valueOf(intValue));
+				}
+				break;
+			case LONG:
+				long longValue = WritableUtils.readVLong(in);
+				if (prim)
+				{
+					accessor.setLong(bean, longValue);
+				}
+				else
+				{
+					accessor.set(bean, Long.valueOf(longValue));
+				}
+				break;
+			case DOUBLE:
+				double doubleValue = in.readDouble();
+				if (prim)
+				{
+					accessor.setDouble(bean, doubleValue);
+				}
+				else
+				{
+					accessor.set(bean, Double.valueOf(doubleValue));
+				}
+				break;
+			case FLOAT:
+				accessor.set(bean, Float.valueOf(in.readFloat()));
+				break;
+			case BOOLEAN:
+				boolean booleanValue = in.readBoolean();
+				if (prim)
+				{
+					accessor.setBoolean(bean, booleanValue);
+				}
+				else
+				{
+					accessor.set(bean, Boolean.valueOf(booleanValue));
+				}
+				break;
+			case DATE:
+				accessor.set(bean, new Date(WritableUtils.readVLong(in)));
+				break;
+			case DECIMAL:
+				int scale = WritableUtils.readVInt(in);
+				byte[] unscaled = new byte[WritableUtils.readVInt(in)];
+				in.readFully(unscaled);
+				accessor.set(bean, new BigDecimal(new BigInteger(unscaled), scale));
+				break;
+			default:
+				bean.setJavaBeanField(names[i], readString(in));
+				break;
+		}
+	}
+
+	/*
+	 * Same bytes as Text.writeString / readString, without Text's CharsetEncoder / Decoder (a lot slower than String's)
+	 */
+
+	private static void writeString(DataOutput out, String value) throws IOException
+	{
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		WritableUtils.writeVInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException
+	{
+		byte[] bytes = new byte[WritableUtils.readVInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
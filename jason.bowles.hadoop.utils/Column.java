@@ -0,0 +1,35 @@
+package jason.bowles.hadoop.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Where a field of a {@link BeanRecord} bean is in the record, same thing as
+ * {@link BaseJavaBean#addName(String, Integer, boolean)}.
+ *
+ * @author id19868
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Column
+{
+	/**
+	 * @return the 1 based position of the field in the record
+	 */
+	int order();
+
+	/**
+	 * @return true to step over the column without loading it
+	 */
+	boolean skip() default false;
+
+	/**
+	 * @return for a Date field, the SimpleDateFormat pattern the column is in (it is tried first when parsing,
+	 *  and the date is written back out in it)
+	 */
+	String format() default "";
+}
@@ -0,0 +1,352 @@
+package jason.bowles.hadoop.utils;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A {@link BeanCodec} put together at runtime from a {@link BeanSchema}, for the beans that don't have a
+ * generated one (no {@link BeanRecord} annotations, or a layout that came from a header record).
+ *
+ * <p> The field order, the types and the bound getters / setters are all worked out once, when the schema is
+ * built.  What is left for each column is a little loader that already knows how to convert the value and
+ * which setter to call, so a record is loaded without looking up a single name or checking a single type.
+ * Anything that doesn't fit one of the loaders (a field type the loader doesn't convert, a missing setter)
+ * just goes through the reflective code for that one column.
+ *
+ * @author id19868
+ */
+final class CompiledCodec implements BeanCodec<BaseJavaBean>
+{
+	/**
+	 * Loads one column
+	 */
+	private interface Loader
+	{
+		void load(BaseJavaBean bean, DelimitedTokenizer tokens, int column);
+	}
+
+	/**
+	 * Writes one field
+	 */
+	private interface Writer
+	{
+		void write(BaseJavaBean bean, StringBuilder sb, String delimiter);
+	}
+
+	/**
+	 * Compares one field of two beans
+	 */
+	private interface Comparer
+	{
+		int compare(BaseJavaBean a, BaseJavaBean b);
+	}
+
+	private final Class<BaseJavaBean> beanClass;
+	private final BeanSchema schema;
+	private final String[] columns;
+	private final Loader[] loaders;
+	private final int width;
+	private final Writer[] writers;
+	private final boolean[] writerSkipped;
+	private final String[] keyFields;
+	private final Writer[] keyWriters;
+	private final Comparer[] comparers;
+	// the last other key asked for (a bean class almost always uses the same one)
+	private volatile CompiledCodec keyed;
+
+	@SuppressWarnings("unchecked")
+	private CompiledCodec(BeanSchema schema, String[] keyFields)
+	{
+		this.beanClass = (Class<BaseJavaBean>) schema.getBeanClass();
+		this.schema = schema;
+		this.columns = new String[schema.getColumnCount()];
+		this.loaders = new Loader[columns.length];
+		int last = 0;
+		for (int i = 0; i < columns.length; i++)
+		{
+			columns[i] = schema.getColumnName(i);
+			if (!schema.isSkipped(i))
+			{
+				loaders[i] = loader(schema.getColumnAccessor(i));
+				last = i + 1;
+			}
+		}
+		this.width = last;
+
+		List<String> fields = schema.getFields(true);
+		this.writers = new Writer[fields.size()];
+		this.writerSkipped = new boolean[fields.size()];
+		for (int i = 0; i < writers.length; i++)
+		{
+			writers[i] = writer(fields.get(i));
+			writerSkipped[i] = schema.isSkipped(fields.get(i));
+		}
+
+		this.keyFields = keyFields.clone();
+		this.keyWriters = new Writer[keyFields.length];
+		for (int i = 0; i < keyWriters.length; i++)
+		{
+			keyWriters[i] = writer(keyFields[i]);
+		}
+		List<String> compared = keyFields.length > 0 ? Arrays.asList(keyFields) : schema.getFields(false);
+		this.comparers = new Comparer[compared.size()];
+		for (int i = 0; i < comparers.length; i++)
+		{
+			comparers[i] = comparer(compared.get(i));
+		}
+	}
+
+	/**
+	 * @param schema
+	 * @return the codec for the schema, with no key until {@link #forKey(String[])} asks for one
+	 */
+	static CompiledCodec compile(BeanSchema schema)
+	{
+		return new CompiledCodec(schema, new String[0]);
+	}
+
+	/**
+	 * @param fields
+	 * @return the same codec, building keys from these fields
+	 */
+	CompiledCodec forKey(String[] fields)
+	{
+		if (Arrays.equals(keyFields, fields))
+		{
+			return this;
+		}
+		CompiledCodec other = keyed;
+		if (other == null || !Arrays.equals(other.keyFields, fields))
+		{
+			other = new CompiledCodec(schema, fields);
+			keyed = other;
+		}
+		return other;
+	}
+
+	private static Loader loader(BeanAccessor accessor)
+	{
+		Class<?> type = accessor.getType();
+		String name = accessor.getName();
+		if (type == null || !accessor.canSet())
+		{
+			return BaseJavaBean::loadColumn;
+		}
+		if (type == String.class)
+		{
+			return (bean, tokens, i) -> accessor.set(bean, BeanCodecs.text(bean, tokens, i));
+		}
+		if (NumberParser.isNumber(type) || type == Date.class || type == Boolean.class)
+		{
+			return (bean, tokens, i) ->
+			{
+				Object value = BeanCodecs.convert(bean, tokens, i, name, type);
+				if (value != null)
+				{
+					accessor.set(bean, value);
+				}
+			};
+		}
+		if (type == int.class)
+		{
+			return (bean, tokens, i) ->
+			{
+				if (BeanCodecs.number(bean, tokens, i, name))
+				{
+					accessor.setInt(bean, NumberParser.get().intValue());
+				}
+			};
+		}
+		if (type == long.class)
+		{
+			return (bean, tokens, i) ->
+			{
+				if (BeanCodecs.number(bean, tokens, i, name))
+				{
+					accessor.setLong(bean, NumberParser.get().longValue());
+				}
+			};
+		}
+		if (type == double.class)
+		{
+			return (bean, tokens, i) ->
+			{
+				if (BeanCodecs.number(bean, tokens, i, name))
+				{
+					accessor.setDouble(bean, NumberParser.get().doubleValue());
+				}
+			};
+		}
+		if (type == boolean.class)
+		{
+			return (bean, tokens, i) ->
+			{
+				if (BeanCodecs.present(bean, tokens, i))
+				{
+					accessor.setBoolean(bean, BeanCodecs.parseBoolean(tokens, i));
+				}
+			};
+		}
+		return BaseJavaBean::loadColumn;
+	}
+
+	private Writer writer(String name)
+	{
+		Integer order = schema.getOrder(name);
+		BeanAccessor accessor = schema.getAccessor(name);
+		Class<?> type = accessor.getType();
+		if (order == null || type == null || !accessor.canGet())
+		{
+			return (bean, sb, delimiter) -> BeanCodecs.appendValue(sb, bean.getStringValue(name), delimiter);
+		}
+		int column = order - 1;
+		if (type == Date.class)
+		{
+			return (bean, sb, delimiter) -> BeanCodecs.appendDate(sb, bean, column, (Date) accessor.get(bean), delimiter);
+		}
+		if (type == int.class)
+		{
+			return (bean, sb, delimiter) -> BeanCodecs.appendInt(sb, bean, column, accessor.getInt(bean), delimiter);
+		}
+		if (type == long.class)
+		{
+			return (bean, sb, delimiter) -> BeanCodecs.appendLong(sb, bean, column, accessor.getLong(bean), delimiter);
+		}
+		if (type == double.class)
+		{
+			return (bean, sb, delimiter) -> BeanCodecs.appendDouble(sb, bean, column, accessor.getDouble(bean), delimiter);
+		}
+		if (type == boolean.class)
+		{
+			return (bean, sb, delimiter) -> BeanCodecs.appendBoolean(sb, bean, column, accessor.getBoolean(bean), delimiter);
+		}
+		if (type.isPrimitive())
+		{
+			return (bean, sb, delimiter) ->
+			{
+				Object value = accessor.get(bean);
+				if (!accessor.isEmpty(value) || !bean.isNullColumn(column))
+				{
+					BeanCodecs.appendValue(sb, value, delimiter);
+				}
+			};
+		}
+		return (bean, sb, delimiter) -> BeanCodecs.appendValue(sb, accessor.get(bean), delimiter);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Comparer comparer(String name)
+	{
+		BeanAccessor accessor = schema.getAccessor(name);
+		Class<?> type = accessor.getType();
+		if (type == null || !accessor.canGet())
+		{
+			return (a, b) -> a.getStringValue(name).compareTo(b.getStringValue(name));
+		}
+		if (type == int.class)
+		{
+			return (a, b) -> Integer.compare(accessor.getInt(a), accessor.getInt(b));
+		}
+		if (type == long.class)
+		{
+			return (a, b) -> Long.compare(accessor.getLong(a), accessor.getLong(b));
+		}
+		if (type == double.class)
+		{
+			return (a, b) -> Double.compare(accessor.getDouble(a), accessor.getDouble(b));
+		}
+		if (type == boolean.class)
+		{
+			return (a, b) -> Boolean.compare(accessor.getBoolean(a), accessor.getBoolean(b));
+		}
+		if (Comparable.class.isAssignableFrom(BeanAccessor.wrap(type)))
+		{
+			return (a, b) -> BeanCodecs.compare((Comparable) accessor.get(a), (Comparable) accessor.get(b));
+		}
+		return (a, b) -> a.getStringValue(name).compareTo(b.getStringValue(name));
+	}
+
+	@Override
+	public Class<BaseJavaBean> getBeanClass()
+	{
+		return beanClass;
+	}
+
+	@Override
+	public String[] getColumns()
+	{
+		return columns.clone();
+	}
+
+	@Override
+	public boolean isSkipped(int column)
+	{
+		return schema.isSkipped(column);
+	}
+
+	@Override
+	public String[] getKeyFields()
+	{
+		return keyFields.clone();
+	}
+
+	@Override
+	public void parse(BaseJavaBean bean, DelimitedTokenizer tokens)
+	{
+		int count = Math.min(tokens.count(), width);
+		for (int i = 0; i < count; i++)
+		{
+			Loader loader = loaders[i];
+			if (loader != null)
+			{
+				loader.load(bean, tokens, i);
+			}
+		}
+	}
+
+	@Override
+	public void appendTo(BaseJavaBean bean, StringBuilder sb, String delimiter, boolean includeSkipFields)
+	{
+		boolean more = false;
+		for (int i = 0; i < writers.length; i++)
+		{
+			if (includeSkipFields || !writerSkipped[i])
+			{
+				if (more)
+				{
+					sb.append(delimiter);
+				}
+				writers[i].write(bean, sb, delimiter);
+				more = true;
+			}
+		}
+	}
+
+	@Override
+	public void appendKey(BaseJavaBean bean, StringBuilder sb, String delimiter)
+	{
+		for (int i = 0; i < keyWriters.length; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(delimiter);
+			}
+			keyWriters[i].write(bean, sb, null);
+		}
+	}
+
+	@Override
+	public int compare(BaseJavaBean a, BaseJavaBean b)
+	{
+		for (Comparer comparer: comparers)
+		{
+			int c = comparer.compare(a, b);
+			if (c != 0)
+			{
+				return c;
+			}
+		}
+		return 0;
+	}
+}
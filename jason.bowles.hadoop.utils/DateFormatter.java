@@ -0,0 +1,238 @@
+package jason.bowles.hadoop.utils;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes Dates out in a SimpleDateFormat pattern, without building a {@link SimpleDateFormat} for every value.
+ *
+ * <p> One formatter is cached per pattern ({@link #forPattern(String)}), they are immutable and thread-safe.
+ * Numeric patterns (y M d H h m s S and separators, so MM/dd/yyyy, yyyyMMdd and the rest of the built in
+ * formats) are written with plain arithmetic straight into the output, no Calendar involved.  Anything else
+ * (month names, AM/PM, time zones...) goes through a SimpleDateFormat cached for the thread.  Either way the
+ * text is exactly what SimpleDateFormat would have written.
+ * <br> Dates are written in the default time zone at the time of the call (not when the formatter was made), so
+ * a TimeZone.setDefault is picked up the same as it was by a new SimpleDateFormat.
+ *
+ * @author id19868
+ */
+public final class DateFormatter
+{
+	private static final ConcurrentMap<String, DateFormatter> FORMATTERS = new ConcurrentHashMap<String, DateFormatter>();
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+	private static final String FIELDS = "yMdHhmsS";
+	private static final char LITERAL = 0;
+	// dates before the gregorian calendar (or after year 9999) are left to SimpleDateFormat
+	private static final long MIN_FAST = -11676096000000L;
+	private static final long MAX_FAST = 253402300799999L;
+
+	private final String pattern;
+	// null if the pattern can't be done by hand
+	private final char[] letters;
+	private final int[] counts;
+	private final ThreadLocal<SimpleDateFormat> simpleFormat;
+
+	private DateFormatter(String pattern)
+	{
+		this.pattern = pattern;
+		List<Character> letterList = new ArrayList<Character>();
+		List<Integer> countList = new ArrayList<Integer>();
+		boolean simple = compile(pattern, letterList, countList);
+		this.letters = simple ? new char[letterList.size()] : null;
+		this.counts = simple ? new int[countList.size()] : null;
+		for (int i = 0; simple && i < letters.length; i++)
+		{
+			letters[i] = letterList.get(i);
+			counts[i] = countList.get(i);
+		}
+		this.simpleFormat = new ThreadLocal<SimpleDateFormat>()
+		{
+			@Override
+			protected SimpleDateFormat initialValue()
+			{
+				return new SimpleDateFormat(DateFormatter.this.pattern);
+			}
+		};
+		// a bad pattern should fail now, like new SimpleDateFormat(pattern) always has
+		new SimpleDateFormat(pattern);
+	}
+
+	/**
+	 * @param pattern a SimpleDateFormat pattern
+	 * @return the shared formatter for the pattern
+	 */
+	public static DateFormatter forPattern(String pattern)
+	{
+		DateFormatter formatter = FORMATTERS.get(pattern);
+		if (formatter == null)
+		{
+			formatter = new DateFormatter(pattern);
+			DateFormatter existing = FORMATTERS.putIfAbsent(pattern, formatter);
+			if (existing != null)
+			{
+				formatter = existing;
+			}
+		}
+		return formatter;
+	}
+
+	public String getPattern()
+	{
+		return pattern;
+	}
+
+	/**
+	 * @param date
+	 * @return the date written out in the pattern
+	 */
+	public String format(Date date)
+	{
+		StringBuilder sb = new StringBuilder(pattern.length() + 4);
+		appendTo(sb, date);
+		return sb.toString();
+	}
+
+	/**
+	 * Write the date in the pattern to the end of the buffer
+	 * @param sb
+	 * @param date
+	 */
+	public void appendTo(StringBuilder sb, Date date)
+	{
+		long time = date.getTime();
+		// a copy of the default, looked up every time so a new default is used right away
+		TimeZone zone = TimeZone.getDefault();
+		if (letters == null || time < MIN_FAST || time > MAX_FAST)
+		{
+			SimpleDateFormat format = simpleFormat.get();
+			format.setTimeZone(zone);
+			sb.append(format.format(date));
+			return;
+		}
+		long local = time + zone.getOffset(time);
+		long epochDay = Math.floorDiv(local, MILLIS_PER_DAY);
+		int millisOfDay = (int) Math.floorMod(local, MILLIS_PER_DAY);
+
+		// civil date from the day number (same algorithm as LocalDate.ofEpochDay)
+		long zeroDay = epochDay + 719528 - 60;
+		long yearEst = (400 * zeroDay + 591) / 146097;
+		long doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+		if (doyEst < 0)
+		{
+			yearEst--;
+			doyEst = zeroDay - (365 * yearEst + yearEst / 4 - yearEst / 100 + yearEst / 400);
+		}
+		int marchDoy0 = (int) doyEst;
+		int marchMonth0 = (marchDoy0 * 5 + 2) / 153;
+		int month = (marchMonth0 + 2) % 12 + 1;
+		int day = marchDoy0 - (marchMonth0 * 306 + 5) / 10 + 1;
+		int year = (int) (yearEst + marchMonth0 / 10);
+
+		int hour = millisOfDay / 3600000;
+		int minute = millisOfDay / 60000 % 60;
+		int second = millisOfDay / 1000 % 60;
+		int millis = millisOfDay % 1000;
+
+		for (int i = 0; i < letters.length; i++)
+		{
+			int count = counts[i];
+			switch (letters[i])
+			{
+				case LITERAL:
+					sb.append((char) count);
+					break;
+				case 'y':
+					if (count == 2)
+					{
+						pad(sb, year % 100, 2);
+					}
+					else
+					{
+						pad(sb, year, count);
+					}
+					break;
+				case 'M':
+					pad(sb, month, count);
+					break;
+				case 'd':
+					pad(sb, day, count);
+					break;
+				case 'H':
+					pad(sb, hour, count);
+					break;
+				case 'h':
+					pad(sb, hour % 12 == 0 ? 12 : hour % 12, count);
+					break;
+				case 'm':
+					pad(sb, minute, count);
+					break;
+				case 's':
+					pad(sb, second, count);
+					break;
+				default:
+					pad(sb, millis, count);
+					break;
+			}
+		}
+	}
+
+	private static void pad(StringBuilder sb, int value, int width)
+	{
+		int digits = value < 10 ? 1 : value < 100 ? 2 : value < 1000 ? 3 : value < 10000 ? 4 : Integer.toString(value).length();
+		for (int i = digits; i < width; i++)
+		{
+			sb.append('0');
+		}
+		sb.append(value);
+	}
+
+	/**
+	 * @return false if the pattern uses anything but numeric fields and plain separators
+	 */
+	private static boolean compile(String pattern, List<Character> letters, List<Integer> counts)
+	{
+		for (int i = 0; i < pattern.length(); )
+		{
+			char c = pattern.charAt(i);
+			if (c == '\'' || (Character.isLetter(c) && FIELDS.indexOf(c) < 0))
+			{
+				return false;
+			}
+			if (Character.isLetter(c))
+			{
+				int count = 1;
+				while (i + count < pattern.length() && pattern.charAt(i + count) == c)
+				{
+					count++;
+				}
+				if (c == 'M' && count > 2)
+				{
+					// month names
+					return false;
+				}
+				letters.add(c);
+				counts.add(count);
+				i += count;
+			}
+			else
+			{
+				letters.add(LITERAL);
+				counts.add((int) c);
+				i++;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "DateFormatter[" + pattern + "]";
+	}
+}
@@ -0,0 +1,575 @@
+package jason.bowles.hadoop.utils;
+
+import java.text.DateFormatSymbols;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Turns the date columns of a record into Dates without building a {@link SimpleDateFormat} (or throwing a
+ * {@link java.text.ParseException}) for every format that doesn't fit.
+ *
+ * <p> Each format is compiled once.  Formats made of the usual pieces (y M MMM d H h m s S and separators,
+ * which covers all of the built in ones) are parsed by hand straight out of the record, anything else uses a
+ * {@link SimpleDateFormat} that is cached for the thread.  The results are the same as the old lenient
+ * SimpleDateFormat ones (1/1/2013 is fine for MM/dd/yyyy, 12 is midnight for hh, 2 digit years land within
+ * 80 years before / 20 after today).
+ *
+ * <p> Finding the format:
+ * <ol>
+ * <li> A column with a {@link Column#format()} always tries that one first
+ * <li> The format that worked last time for the same column is tried first, a column almost never mixes formats
+ * <li> Otherwise the shape of the value (starts with a month name or a digit, the first separator) picks
+ *      the formats worth trying, in the usual order
+ * <li> If none of them match the whole value, every format is tried with SimpleDateFormat like before
+ *      (which also takes a value that only starts with a date)
+ * </ol>
+ * A format that matches the whole value wins over one that only matches the start of it.
+ *
+ * <p> Dates are read in the default time zone at the time of the call (not when the parser was made), so a
+ * TimeZone.setDefault is picked up the same as it was by a new SimpleDateFormat.
+ *
+ * <p> One parser belongs to each {@link BeanSchema} and is shared by every bean and thread using it.
+ *
+ * @author id19868
+ */
+public final class DateParser
+{
+	private static final int NO_FORMAT = -1;
+	private static final long MILLIS_PER_DAY = 86400000L;
+	// no time zone moves its clocks twice within this long, so the same offset on both sides means no transition
+	private static final long TRANSITION_WINDOW = 2 * MILLIS_PER_DAY;
+
+	// 2 digit years are put in the century starting 80 years ago (same as SimpleDateFormat)
+	private static final long CENTURY_START;
+	private static final int CENTURY_START_YEAR;
+	static
+	{
+		Calendar cal = new GregorianCalendar();
+		cal.add(Calendar.YEAR, -80);
+		CENTURY_START = cal.getTimeInMillis();
+		CENTURY_START_YEAR = cal.get(Calendar.YEAR);
+	}
+
+	private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>()
+	{
+		@Override
+		protected Calendar initialValue()
+		{
+			return new GregorianCalendar();
+		}
+	};
+
+	private final String[] formats;
+	// null where the format can't be done by hand
+	private final Compiled[] compiled;
+	private final AtomicIntegerArray pinned;
+	// set up front by the schema, never moves
+	private final int[] declared;
+	private final ThreadLocal<SimpleDateFormat[]> simpleFormats;
+	private final Map<String,Integer> monthNames;
+
+	/**
+	 * @param formats SimpleDateFormat patterns in the order they should be tried
+	 * @param columns the number of columns to remember a format for
+	 */
+	public DateParser(String[] formats, int columns)
+	{
+		this.formats = formats.clone();
+		this.compiled = new Compiled[formats.length];
+		for (int i = 0; i < formats.length; i++)
+		{
+			compiled[i] = Compiled.compile(formats[i]);
+		}
+		this.pinned = new AtomicIntegerArray(Math.max(columns, 0));
+		for (int i = 0; i < pinned.length(); i++)
+		{
+			pinned.set(i, NO_FORMAT);
+		}
+		this.declared = new int[pinned.length()];
+		Arrays.fill(declared, NO_FORMAT);
+		this.simpleFormats = new ThreadLocal<SimpleDateFormat[]>()
+		{
+			@Override
+			protected SimpleDateFormat[] initialValue()
+			{
+				return new SimpleDateFormat[DateParser.this.formats.length];
+			}
+		};
+		this.monthNames = monthNames(Locale.getDefault(Locale.Category.FORMAT));
+	}
+
+	public String[] getFormats()
+	{
+		return formats.clone();
+	}
+
+	/**
+	 * @param column
+	 * @return the format that worked last for the column, null if none has yet
+	 */
+	public String getPinnedFormat(int column)
+	{
+		int index = column >= 0 && column < pinned.length() ? pinned.get(column) : NO_FORMAT;
+		return index == NO_FORMAT ? null : formats[index];
+	}
+
+	/**
+	 * Start the column off with a format instead of waiting to find one
+	 * @param column
+	 * @param format one of the formats
+	 */
+	void pin(int column, String format)
+	{
+		for (int i = 0; i < formats.length; i++)
+		{
+			if (formats[i].equals(format) && column >= 0 && column < pinned.length())
+			{
+				pinned.set(column, i);
+			}
+		}
+	}
+
+	/**
+	 * The column is declared to be in this format ({@link Column#format()}), it is always tried first
+	 * @param column
+	 * @param format one of the formats
+	 */
+	void declare(int column, String format)
+	{
+		for (int i = 0; i < formats.length; i++)
+		{
+			if (formats[i].equals(format) && column >= 0 && column < declared.length)
+			{
+				declared[column] = i;
+			}
+		}
+	}
+
+	/**
+	 * @param value
+	 * @return the date, or null if no format fits
+	 */
+	public Date parse(String value)
+	{
+		return parse(value, 0, value.length(), NO_FORMAT);
+	}
+
+	/**
+	 * Parse the date between start and end
+	 * @param chars
+	 * @param start
+	 * @param end
+	 * @param column the column the value came from (to remember its format), -1 if it isn't known
+	 * @return the date, or null if no format fits (nothing is thrown)
+	 */
+	public Date parse(CharSequence chars, int start, int end, int column)
+	{
+		boolean pin = column >= 0 && column < pinned.length();
+		int first = pin ? declared[column] : NO_FORMAT;
+		if (first != NO_FORMAT)
+		{
+			Date date = parseWith(first, chars, start, end);
+			if (date != null)
+			{
+				return date;
+			}
+		}
+		int last = pin ? pinned.get(column) : NO_FORMAT;
+		if (last != NO_FORMAT && last != first)
+		{
+			Date date = parseWith(last, chars, start, end);
+			if (date != null)
+			{
+				return date;
+			}
+		}
+
+		boolean alpha = start < end && Character.isLetter(chars.charAt(start));
+		char separator = separator(chars, start, end);
+		for (int i = 0; i < compiled.length; i++)
+		{
+			Compiled fmt = compiled[i];
+			if (i != last && fmt != null && fmt.startsWithText == alpha && fmt.separator == separator)
+			{
+				Date date = parseWith(i, chars, start, end);
+				if (date != null)
+				{
+					if (pin)
+					{
+						pinned.set(column, i);
+					}
+					return date;
+				}
+			}
+		}
+
+		// the slow way, exactly like it has always been done
+		String value = chars.subSequence(start, end).toString();
+		SimpleDateFormat[] cache = simpleFormats.get();
+		ParsePosition pos = new ParsePosition(0);
+		for (int i = 0; i < formats.length; i++)
+		{
+			pos.setIndex(0);
+			Date date = simpleFormat(cache, i).parse(value, pos);
+			if (date != null)
+			{
+				if (pin && pos.getIndex() == value.length())
+				{
+					pinned.set(column, i);
+				}
+				return date;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parse with one format, it has to match the whole value
+	 */
+	private Date parseWith(int index, CharSequence chars, int start, int end)
+	{
+		Compiled fmt = compiled[index];
+		if (fmt != null)
+		{
+			return fmt.parse(this, chars, start, end);
+		}
+		String value = chars.subSequence(start, end).toString();
+		ParsePosition pos = new ParsePosition(0);
+		Date date = simpleFormat(simpleFormats.get(), index).parse(value, pos);
+		return date != null && pos.getIndex() == value.length() ? date : null;
+	}
+
+	private SimpleDateFormat simpleFormat(SimpleDateFormat[] cache, int index)
+	{
+		if (cache[index] == null)
+		{
+			cache[index] = new SimpleDateFormat(formats[index]);
+		}
+		cache[index].setTimeZone(TimeZone.getDefault());
+		return cache[index];
+	}
+
+	/**
+	 * @return the first character that isn't a letter or a digit, 0 if there isn't one
+	 */
+	private static char separator(CharSequence chars, int start, int end)
+	{
+		for (int i = start; i < end; i++)
+		{
+			char c = chars.charAt(i);
+			if (!Character.isLetterOrDigit(c))
+			{
+				return c;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return month names (long and short, lower case) to month number (zero based)
+	 */
+	private static Map<String,Integer> monthNames(Locale locale)
+	{
+		DateFormatSymbols symbols = DateFormatSymbols.getInstance(locale);
+		Map<String,Integer> names = new HashMap<String,Integer>();
+		String[][] lists = {symbols.getShortMonths(), symbols.getMonths()};
+		for (String[] list: lists)
+		{
+			for (int i = 0; i < list.length && i < 12; i++)
+			{
+				if (!list[i].isEmpty())
+				{
+					names.put(list[i].toLowerCase(locale), i);
+				}
+			}
+		}
+		return names;
+	}
+
+	private Integer month(CharSequence chars, int start, int end)
+	{
+		if (end - start > 20)
+		{
+			return null;
+		}
+		StringBuilder sb = new StringBuilder(end - start);
+		for (int i = start; i < end; i++)
+		{
+			sb.append(Character.toLowerCase(chars.charAt(i)));
+		}
+		return monthNames.get(sb.toString());
+	}
+
+	/**
+	 * Work out the time in milliseconds the way a lenient GregorianCalendar would.  Normal dates away from a
+	 * daylight savings change are done with plain arithmetic, the rest go through the calendar.
+	 */
+	private long toMillis(int year, int month, int day, int hour, boolean hourOfDay, int minute, int second, int millis)
+	{
+		if (year >= 1600 && year <= 9999 && month >= 0 && month < 12
+				&& day >= 1 && day <= lengthOfMonth(year, month) && hour >= 0 && hour < (hourOfDay ? 24 : 12)
+				&& minute >= 0 && minute < 60 && second >= 0 && second < 60 && millis >= 0 && millis < 1000)
+		{
+			// a copy of the default, looked up every time so a new default is used right away
+			TimeZone zone = TimeZone.getDefault();
+			long local = epochDay(year, month + 1, day) * MILLIS_PER_DAY + ((hour * 60L + minute) * 60L + second) * 1000L + millis;
+			int offset = zone.getOffset(local - zone.getRawOffset());
+			long time = local - offset;
+			if (zone.getOffset(time - TRANSITION_WINDOW) == offset && zone.getOffset(time + TRANSITION_WINDOW) == offset)
+			{
+				return time;
+			}
+		}
+		Calendar cal = CALENDAR.get();
+		cal.setTimeZone(TimeZone.getDefault());
+		cal.clear();
+		cal.set(Calendar.YEAR, year);
+		cal.set(Calendar.MONTH, month);
+		cal.set(Calendar.DAY_OF_MONTH, day);
+		cal.set(hourOfDay ? Calendar.HOUR_OF_DAY : Calendar.HOUR, hour);
+		cal.set(Calendar.MINUTE, minute);
+		cal.set(Calendar.SECOND, second);
+		cal.set(Calendar.MILLISECOND, millis);
+		return cal.getTimeInMillis();
+	}
+
+	private static int lengthOfMonth(int year, int month)
+	{
+		if (month == 1)
+		{
+			return isLeapYear(year) ? 29 : 28;
+		}
+		return month == 3 || month == 5 || month == 8 || month == 10 ? 30 : 31;
+	}
+
+	private static boolean isLeapYear(long year)
+	{
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	/**
+	 * Days since 1970-01-01 (proleptic gregorian, same as LocalDate.toEpochDay)
+	 */
+	private static long epochDay(int year, int month, int day)
+	{
+		long y = year;
+		long total = 365 * y;
+		total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+		total += (367 * month - 362) / 12;
+		total += day - 1;
+		if (month > 2)
+		{
+			total--;
+			if (!isLeapYear(y))
+			{
+				total--;
+			}
+		}
+		return total - 719528;
+	}
+
+	/**
+	 * A SimpleDateFormat pattern broken into the pieces the hand written parser understands
+	 */
+	private static final class Compiled
+	{
+		private static final char LITERAL = 0;
+		private static final String FIELDS = "yMdHhmsS";
+
+		// letter (0 for a literal), how many times it repeats (the literal char for a literal)
+		private final char[] letters;
+		private final int[] counts;
+		// the next piece is a field right up against this one, so this one has a fixed width
+		private final boolean[] fixedWidth;
+		private final boolean startsWithText;
+		private final char separator;
+
+		private Compiled(List<Character> letters, List<Integer> counts)
+		{
+			int size = letters.size();
+			this.letters = new char[size];
+			this.counts = new int[size];
+			this.fixedWidth = new boolean[size];
+			for (int i = 0; i < size; i++)
+			{
+				this.letters[i] = letters.get(i);
+				this.counts[i] = counts.get(i);
+				this.fixedWidth[i] = this.letters[i] != LITERAL && i + 1 < size && letters.get(i + 1) != LITERAL;
+			}
+			this.startsWithText = size > 0 && this.letters[0] == 'M' && this.counts[0] >= 3;
+			char sep = 0;
+			for (int i = 0; i < size && sep == 0; i++)
+			{
+				if (this.letters[i] == LITERAL && !Character.isLetterOrDigit((char) this.counts[i]))
+				{
+					sep = (char) this.counts[i];
+				}
+			}
+			this.separator = sep;
+		}
+
+		/**
+		 * @param pattern
+		 * @return null if the pattern uses anything that can't be parsed by hand
+		 */
+		static Compiled compile(String pattern)
+		{
+			List<Character> letters = new ArrayList<Character>();
+			List<Integer> counts = new ArrayList<Integer>();
+			for (int i = 0; i < pattern.length(); )
+			{
+				char c = pattern.charAt(i);
+				if (c == '\'' || (Character.isLetter(c) && FIELDS.indexOf(c) < 0) || (c > 0x7f))
+				{
+					return null;
+				}
+				if (Character.isLetter(c))
+				{
+					int count = 1;
+					while (i + count < pattern.length() && pattern.charAt(i + count) == c)
+					{
+						count++;
+					}
+					if (c != 'M' && count > 9)
+					{
+						return null;
+					}
+					letters.add(c);
+					counts.add(count);
+					i += count;
+				}
+				else
+				{
+					letters.add(LITERAL);
+					counts.add((int) c);
+					i++;
+				}
+			}
+			return letters.isEmpty() ? null : new Compiled(letters, counts);
+		}
+
+		Date parse(DateParser parser, CharSequence chars, int start, int end)
+		{
+			int year = 1970;
+			boolean twoDigitYear = false;
+			int month = 0;
+			int day = 1;
+			int hour = 0;
+			boolean hourOfDay = true;
+			int minute = 0;
+			int second = 0;
+			int millis = 0;
+
+			int pos = start;
+			for (int p = 0; p < letters.length; p++)
+			{
+				char letter = letters[p];
+				if (letter == LITERAL)
+				{
+					if (pos >= end || chars.charAt(pos) != (char) counts[p])
+					{
+						return null;
+					}
+					pos++;
+					continue;
+				}
+				if (letter == 'M' && counts[p] >= 3)
+				{
+					int nameEnd = pos;
+					while (nameEnd < end && Character.isLetter(chars.charAt(nameEnd)))
+					{
+						nameEnd++;
+					}
+					Integer m = parser.month(chars, pos, nameEnd);
+					if (m == null)
+					{
+						return null;
+					}
+					month = m;
+					pos = nameEnd;
+					continue;
+				}
+
+				int digitsEnd = pos;
+				int max = fixedWidth[p] ? pos + counts[p] : Math.min(end, pos + 9);
+				int value = 0;
+				while (digitsEnd < end && digitsEnd < max)
+				{
+					char c = chars.charAt(digitsEnd);
+					if (c < '0' || c > '9')
+					{
+						break;
+					}
+					value = value * 10 + (c - '0');
+					digitsEnd++;
+				}
+				int digits = digitsEnd - pos;
+				if (digits == 0 || (fixedWidth[p] && digits != counts[p]) || (digitsEnd < end && digitsEnd == max && !fixedWidth[p]
+						&& Character.isDigit(chars.charAt(digitsEnd))))
+				{
+					// too short, or too long to be a normal date (let SimpleDateFormat sort it out)
+					return null;
+				}
+				pos = digitsEnd;
+				switch (letter)
+				{
+					case 'y':
+						year = value;
+						if (counts[p] <= 2 && digits == 2)
+						{
+							int twoDigits = CENTURY_START_YEAR % 100;
+							year = value + (CENTURY_START_YEAR / 100) * 100 + (value < twoDigits ? 100 : 0);
+							twoDigitYear = value == twoDigits;
+						}
+						break;
+					case 'M':
+						month = value - 1;
+						break;
+					case 'd':
+						day = value;
+						break;
+					case 'H':
+						hour = value;
+						hourOfDay = true;
+						break;
+					case 'h':
+						// 12 is the first hour (12:30 AM is half past midnight)
+						hour = value == 12 ? 0 : value;
+						hourOfDay = false;
+						break;
+					case 'm':
+						minute = value;
+						break;
+					case 's':
+						second = value;
+						break;
+					default:
+						// 'S' is just a number of milliseconds, however many digits there are
+						millis = value;
+						break;
+				}
+			}
+			if (pos != end)
+			{
+				return null;
+			}
+			long time = parser.toMillis(year, month, day, hour, hourOfDay, minute, second, millis);
+			if (twoDigitYear && time < CENTURY_START)
+			{
+				time = parser.toMillis(year + 100, month, day, hour, hourOfDay, minute, second, millis);
+			}
+			return new Date(time);
+		}
+	}
+}
@@ -0,0 +1,435 @@
+package jason.bowles.hadoop.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a delimited record in one pass over the characters.
+ *
+ * <p> This replaces the old split routine (swap quoted delimiters for "-COMMA-", {@link String#split(String)},
+ * then a replaceAll on every value).  The tokenizer just remembers where each field starts and ends in the
+ * original line, nothing is copied until somebody asks for the value of a field with {@link #get(int)}.
+ *
+ * <p> Rules (the same ones the old code followed):
+ * <ul>
+ * <li> The delimiter is taken literally, so "|", "." or "\u0001" all work (it can be more than one character)
+ * <li> A double quote turns quoting on or off, delimiters inside quotes are part of the value
+ * <li> A field wrapped in double quotes has them removed, and "" inside it becomes "
+ * <li> A field wrapped in single quotes has them removed
+ * <li> Empty fields at the end of the line are dropped (like {@link String#split(String)}) and a blank line has no fields
+ * </ul>
+ *
+ * <p> Records can also be tokenized straight from UTF-8 bytes (a Hadoop Text) with {@link #tokenize(byte[], int, int)}.
+ * The quotes and delimiters are found in the raw bytes (UTF-8 never uses an ASCII byte inside a multi-byte
+ * character, so this is safe), and only the fields that are asked for with {@link #get(int)} are decoded.
+ * Numbers, dates and booleans can be parsed right out of {@link #chars()} without decoding anything.
+ *
+ * <p> A tokenizer is reusable but not thread-safe, use {@link #acquire(String)} to borrow the one for the current thread.
+ *
+ * @author id19868
+ */
+public final class DelimitedTokenizer
+{
+	private static final char QUOTE = '"';
+	private static final char QUOTE_S = '\'';
+
+	private static final byte PLAIN = 0;
+	private static final byte DOUBLE_QUOTED = 1;
+	private static final byte SINGLE_QUOTED = 2;
+	private static final byte ESCAPED = 3;
+
+	private static final ThreadLocal<DelimitedTokenizer> LOCAL = new ThreadLocal<DelimitedTokenizer>();
+
+	private String delimiter;
+	// the delimiter's UTF-8 bytes, one char per byte, for matching against the raw bytes
+	private String byteDelimiter;
+	private CharSequence line;
+	private final ByteChars byteLine = new ByteChars();
+	private int count;
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private byte[] quoting = new byte[16];
+
+	public DelimitedTokenizer(String delimiter)
+	{
+		setDelimiter(delimiter);
+	}
+
+	/**
+	 * Borrow this thread's tokenizer (hand it back with {@link #release()} when done)
+	 * <br> If it is already in use (a bean loading another bean while it loads) you just get a new one
+	 * @param delimiter
+	 * @return
+	 */
+	public static DelimitedTokenizer acquire(String delimiter)
+	{
+		DelimitedTokenizer tokenizer = LOCAL.get();
+		if (tokenizer == null)
+		{
+			return new DelimitedTokenizer(delimiter);
+		}
+		LOCAL.set(null);
+		tokenizer.setDelimiter(delimiter);
+		return tokenizer;
+	}
+
+	/**
+	 * Give the tokenizer back so the next {@link #acquire(String)} on this thread can use it
+	 */
+	public void release()
+	{
+		this.line = null;
+		this.byteLine.clear();
+		LOCAL.set(this);
+	}
+
+	public String getDelimiter()
+	{
+		return delimiter;
+	}
+
+	public void setDelimiter(String delimiter)
+	{
+		if (delimiter == null || delimiter.isEmpty())
+		{
+			throw new IllegalArgumentException("Delimiter can't be empty");
+		}
+		if (delimiter.equals(this.delimiter))
+		{
+			return;
+		}
+		this.delimiter = delimiter;
+		this.byteDelimiter = new String(delimiter.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Find the fields in the line
+	 * @param inputLine
+	 * @return the number of fields found
+	 */
+	public int tokenize(CharSequence inputLine)
+	{
+		return tokenize(inputLine, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Find the first maxFields fields in the line, the rest of the line isn't looked at
+	 * @param inputLine
+	 * @param maxFields
+	 * @return the number of fields found
+	 */
+	public int tokenize(CharSequence inputLine, int maxFields)
+	{
+		this.byteLine.clear();
+		return scan(inputLine, delimiter, maxFields);
+	}
+
+	/**
+	 * Find the fields in a UTF-8 encoded line without decoding it
+	 * (positions from {@link #start(int)} and {@link #end(int)} are relative to the offset)
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return the number of fields found
+	 */
+	public int tokenize(byte[] bytes, int offset, int length)
+	{
+		return tokenize(bytes, offset, length, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Find the first maxFields fields in a UTF-8 encoded line, the rest of the line isn't looked at
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @param maxFields
+	 * @return the number of fields found
+	 */
+	public int tokenize(byte[] bytes, int offset, int length, int maxFields)
+	{
+		this.byteLine.wrap(bytes, offset, length);
+		return scan(byteLine, byteDelimiter, maxFields);
+	}
+
+	private int scan(CharSequence inputLine, String delimiter, int maxFields)
+	{
+		this.line = inputLine;
+		this.count = 0;
+		int len = inputLine.length();
+		if (isBlank(inputLine, 0, len))
+		{
+			return 0;
+		}
+
+		char delim = delimiter.charAt(0);
+		int delimLen = delimiter.length();
+		boolean inQuote = false;
+		boolean escaped = false;
+		int start = 0;
+		int lastNonEmpty = -1;
+		for (int i = 0; i < len; i++)
+		{
+			char c = inputLine.charAt(i);
+			if (c == QUOTE)
+			{
+				// "" inside a quoted value is an escaped quote
+				if (inQuote && i + 1 < len && inputLine.charAt(i + 1) == QUOTE && i > start)
+				{
+					escaped = true;
+					i++;
+					continue;
+				}
+				inQuote = !inQuote;
+			}
+			else if (c == delim && !inQuote && matchesDelimiter(inputLine, delimiter, i, len, delimLen))
+			{
+				if (add(start, i, escaped))
+				{
+					lastNonEmpty = count - 1;
+				}
+				if (count >= maxFields)
+				{
+					// stopped early, so there's no telling if the empty fields are at the end of the line
+					return count;
+				}
+				start = i + delimLen;
+				i = start - 1;
+				escaped = false;
+			}
+		}
+		if (add(start, len, escaped))
+		{
+			lastNonEmpty = count - 1;
+		}
+		count = lastNonEmpty + 1;
+		return count;
+	}
+
+	private static boolean matchesDelimiter(CharSequence inputLine, String delimiter, int pos, int len, int delimLen)
+	{
+		if (delimLen == 1)
+		{
+			return true;
+		}
+		if (pos + delimLen > len)
+		{
+			return false;
+		}
+		for (int j = 1; j < delimLen; j++)
+		{
+			if (inputLine.charAt(pos + j) != delimiter.charAt(j))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the field isn't empty
+	 */
+	private boolean add(int start, int end, boolean escaped)
+	{
+		if (count == starts.length)
+		{
+			int size = count * 2;
+			starts = Arrays.copyOf(starts, size);
+			ends = Arrays.copyOf(ends, size);
+			quoting = Arrays.copyOf(quoting, size);
+		}
+		byte quote = PLAIN;
+		if (end - start >= 2 && !isBlank(line, start, end))
+		{
+			char first = line.charAt(start);
+			char last = line.charAt(end - 1);
+			if (first == QUOTE && last == QUOTE)
+			{
+				quote = escaped ? ESCAPED : DOUBLE_QUOTED;
+			}
+			else if (first == QUOTE_S && last == QUOTE_S)
+			{
+				quote = SINGLE_QUOTED;
+			}
+		}
+		starts[count] = start;
+		ends[count] = end;
+		quoting[count] = quote;
+		count++;
+		return end > start;
+	}
+
+	private static boolean isBlank(CharSequence chars, int start, int end)
+	{
+		for (int i = start; i < end; i++)
+		{
+			if (chars.charAt(i) > ' ')
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return number of fields found by the last {@link #tokenize(CharSequence)}
+	 */
+	public int count()
+	{
+		return count;
+	}
+
+	public CharSequence getLine()
+	{
+		return line;
+	}
+
+	/**
+	 * The line being tokenized, for parsing values in place between {@link #start(int)} and {@link #end(int)}.
+	 * <br> When tokenizing bytes each char is one byte, which is only the real character for ASCII
+	 * (fine for numbers, dates and booleans, use {@link #get(int)} for text)
+	 * @return
+	 */
+	public CharSequence chars()
+	{
+		return line;
+	}
+
+	/**
+	 * @return true if the last line tokenized was UTF-8 bytes
+	 */
+	public boolean isBytes()
+	{
+		return byteLine.bytes != null;
+	}
+
+	/**
+	 * @param i field number (zero based)
+	 * @return where the value starts in the line (after any surrounding quote)
+	 */
+	public int start(int i)
+	{
+		return quoting[i] == PLAIN ? starts[i] : starts[i] + 1;
+	}
+
+	/**
+	 * @param i field number (zero based)
+	 * @return where the value ends in the line (before any surrounding quote)
+	 */
+	public int end(int i)
+	{
+		return quoting[i] == PLAIN ? ends[i] : ends[i] - 1;
+	}
+
+	/**
+	 * @param i field number (zero based)
+	 * @return true if the field was wrapped in quotes
+	 */
+	public boolean isQuoted(int i)
+	{
+		return quoting[i] != PLAIN;
+	}
+
+	/**
+	 * @param i field number (zero based)
+	 * @return true if the value is exactly the characters between {@link #start(int)} and {@link #end(int)}
+	 */
+	public boolean isRaw(int i)
+	{
+		return quoting[i] != ESCAPED;
+	}
+
+	/**
+	 * @param i field number (zero based)
+	 * @return the field exactly as it appears in the line, quotes and all
+	 */
+	public String getRaw(int i)
+	{
+		return line.subSequence(starts[i], ends[i]).toString();
+	}
+
+	/**
+	 * Build the String value of a field (quotes removed)
+	 * @param i field number (zero based)
+	 * @return
+	 */
+	public String get(int i)
+	{
+		String value = line.subSequence(start(i), end(i)).toString();
+		if (quoting[i] != ESCAPED)
+		{
+			return value;
+		}
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int j = 0; j < value.length(); j++)
+		{
+			char c = value.charAt(j);
+			sb.append(c);
+			if (c == QUOTE && j + 1 < value.length() && value.charAt(j + 1) == QUOTE)
+			{
+				j++;
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return all of the field values
+	 */
+	public String[] toArray()
+	{
+		String[] out = new String[count];
+		for (int i = 0; i < count; i++)
+		{
+			out[i] = get(i);
+		}
+		return out;
+	}
+
+	/**
+	 * A view of UTF-8 bytes as chars, one char per byte.  Pieces cut out with {@link #subSequence(int, int)}
+	 * are decoded properly.
+	 */
+	private static final class ByteChars implements CharSequence
+	{
+		private byte[] bytes;
+		private int offset;
+		private int length;
+
+		void wrap(byte[] argBytes, int argOffset, int argLength)
+		{
+			this.bytes = argBytes;
+			this.offset = argOffset;
+			this.length = argLength;
+		}
+
+		void clear()
+		{
+			this.bytes = null;
+			this.length = 0;
+		}
+
+		@Override
+		public int length()
+		{
+			return length;
+		}
+
+		@Override
+		public char charAt(int index)
+		{
+			return (char) (bytes[offset + index] & 0xff);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end)
+		{
+			return new String(bytes, offset + start, end - start, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String toString()
+		{
+			return new String(bytes, offset, length, StandardCharsets.UTF_8);
+		}
+	}
+}
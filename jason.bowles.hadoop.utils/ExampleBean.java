@@ -13,11 +13,13 @@ import java.util.List;
  * <li> Identify the fields (if the file has a header, use the fields names as specified in the header) Not the case in Hadoop
  * <li> create a field in your implementing class with the correct data type, Data Types Include:
  * <ul>
- * <li> Boolean
+ * <li> Boolean (or boolean)
  * <li> String
- * <li> Integer
- * <li> Double
+ * <li> Integer (or int)
+ * <li> Long (or long)
+ * <li> Double (or double)
  * <li> Float
+ * <li> BigDecimal
  * <li> Date
  * </ul>
  * <li> Create getters and setters according to Java standards
@@ -60,13 +62,16 @@ import java.util.List;
  * System.out.println(sum);
  * }
  * </pre>
- * or use the generic method from BaseJavaBean, {@link #getIntValue(String)} with a lambda function
+ * or use the generic method from BaseJavaBean, {@link #getInt(String)} with a lambda function (no Integer is
+ * created for each value, and a null counts as 0)
  * <pre>
  * {@code
- * sum = bns.stream().mapToInt(b -> b.getIntValue("field2")).sum();
+ * sum = bns.stream().mapToInt(b -> b.getInt("field2")).sum();
  * System.out.println(sum);
  * }
  * </pre>
+ * Fields can also be primitives (int, long, double, boolean), the loader sets them without boxing and
+ * {@link #isNull(String)} tells you if the value was missing.
  *
  * <p>
  * All this is to say that using the class {@link BaseJavaBean} makes working with data that is stored in flat files all that much easier!
@@ -138,7 +143,7 @@ public class ExampleBean extends BaseJavaBean {
 		int sum = bns.stream().mapToInt(ExampleBean::getField2).sum();
 		System.out.println(sum);
 		
-		sum = bns.stream().mapToInt(b -> b.getIntValue("field2")).sum();
+		sum = bns.stream().mapToInt(b -> b.getInt("field2")).sum();
 		System.out.println(sum);
 	}
 	
@@ -174,9 +179,10 @@ public class ExampleBean extends BaseJavaBean {
 		return exList;
 	}
 
-	// all the getters and setters
+	// all the getters and setters (the touch calls are only needed if the bean is ever loaded lazily)
 	
 	public String getField1() {
+		touch("field1");
 		return field1;
 	}
 
@@ -185,6 +191,7 @@ public class ExampleBean extends BaseJavaBean {
 	}
 
 	public Integer getField2() {
+		touch("field2");
 		return field2;
 	}
 
@@ -193,6 +200,7 @@ public class ExampleBean extends BaseJavaBean {
 	}
 
 	public Date getField3() {
+		touch("field3");
 		return field3;
 	}
 
@@ -1,13 +1,45 @@
 package jason.bowles.hadoop.utils;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+/**
+ * Beans grouped by their class, one list per class.
+ * <br> The type of a bean is checked when it is added, so {@link #getBaseJavaBeans(Class)} hands back the list
+ * itself (read only) instead of copying and casting it.
+ * <br> A map from {@link #concurrent()} can be filled from several threads at once, read it after they are done.
+ */
 public class JavaBeanMap {
-	  private Map<Class<?>, List<Object>> favorites = new HashMap<Class<?>, List<Object>>();
+	  private final Map<Class<?>, List<?>> favorites;
+	  private final boolean concurrent;
+	  
+	  public JavaBeanMap()
+	  {
+		  this(false);
+	  }
+	  
+	  private JavaBeanMap(boolean concurrent)
+	  {
+		  this.concurrent = concurrent;
+		  this.favorites = concurrent ? new ConcurrentHashMap<Class<?>, List<?>>() : new HashMap<Class<?>, List<?>>();
+	  }
+	  
+	  /**
+	   * A map that beans can be added to from several threads (the lists are synchronized, use
+	   * {@link #addJavaBeans(Class, Collection)} to add a batch with one lock)
+	   * @return
+	   */
+	  public static JavaBeanMap concurrent()
+	  {
+		  return new JavaBeanMap(true);
+	  }
 
 	  public Set<Class<?>> getKeys()
 	  {
@@ -15,24 +47,94 @@ public class JavaBeanMap {
 	  }
 	  
 	  public <T extends BaseJavaBean> void setJavaBean(Class<T> klass) {
-		List<Object> clzzList = new ArrayList<Object>();
-	    favorites.put(klass, clzzList);
+		setJavaBean(klass, 10);
+	  }
+	  
+	  /**
+	   * Start an empty list for the class (replaces what was there)
+	   * @param klass
+	   * @param capacity how many beans are expected
+	   */
+	  public <T extends BaseJavaBean> void setJavaBean(Class<T> klass, int capacity)
+	  {
+		  favorites.put(klass, newList(capacity));
+	  }
+	  
+	  private <T> List<T> newList(int capacity)
+	  {
+		  List<T> list = new ArrayList<T>(capacity);
+		  return concurrent ? Collections.synchronizedList(list) : list;
+	  }
+	  
+	  @SuppressWarnings("unchecked")
+	  private <T extends BaseJavaBean> List<T> list(Class<T> klass)
+	  {
+		  List<?> list = favorites.get(klass);
+		  if (list == null)
+		  {
+			  list = concurrent ? favorites.computeIfAbsent(klass, k -> newList(10)) : null;
+			  if (list == null)
+			  {
+				  list = newList(10);
+				  favorites.put(klass, list);
+			  }
+		  }
+		  return (List<T>) list;
 	  }
 	  
 	  public <T extends BaseJavaBean> void addJavaBean(Class<T> klass, T thing)
 	  {
-		  favorites.get(klass).add(thing);
+		  list(klass).add(klass.cast(thing));
+	  }
+	  
+	  /**
+	   * Add a batch of beans of the same class
+	   * @param klass
+	   * @param things
+	   */
+	  public <T extends BaseJavaBean> void addJavaBeans(Class<T> klass, Collection<? extends T> things)
+	  {
+		  for (T thing: things)
+		  {
+			  klass.cast(thing);
+		  }
+		  list(klass).addAll(things);
 	  }
 	  
+	  /**
+	   * @param klass
+	   * @return the beans of the class, a read only view (not a copy), empty if there aren't any
+	   */
+	  @SuppressWarnings("unchecked")
 	  public <T extends BaseJavaBean> List<T> getBaseJavaBeans(Class<T> klass) 
 	  {
-		List<Object> list = favorites.get(klass);
-		List<T> retList = new ArrayList<T>();
-		for (Object obj: list)
-		{
-			retList.add(klass.cast(obj));
-		}
-	    return retList;
+		List<T> list = (List<T>) favorites.get(klass);
+	    return list == null ? Collections.<T>emptyList() : Collections.unmodifiableList(list);
+	  }
+	  
+	  /**
+	   * @param klass
+	   * @return the number of beans of the class
+	   */
+	  public int size(Class<?> klass)
+	  {
+		  List<?> list = favorites.get(klass);
+		  return list == null ? 0 : list.size();
+	  }
+	  
+	  /**
+	   * Hand each bean of the class to the action, in the order they were added
+	   * @param klass
+	   * @param action
+	   */
+	  @SuppressWarnings("unchecked")
+	  public <T extends BaseJavaBean> void forEach(Class<T> klass, Consumer<? super T> action)
+	  {
+		  List<T> list = (List<T>) favorites.get(klass);
+		  if (list != null)
+		  {
+			  list.forEach(action);
+		  }
 	  }
 
 	}
@@ -8,13 +8,20 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.lang.reflect.Method;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.hadoop.io.Text;
 
@@ -67,6 +74,13 @@ public class JavaBeanUtil {
 	
 
 	
+	/**
+	 * Copies every value to a String.  If the values are plain records (not identifier records) it is cheaper
+	 * to skip this and call {@link BaseJavaBean#loadRecord(Text)} on each one, and for tagged or identifier
+	 * records a {@link BeanVisitor} loads them one at a time without the copy.
+	 * @param values
+	 * @return
+	 */
 	public static List<String> convertHadoopTextIterable(Iterable<Text> values)
 	{
 		List<String> list = new ArrayList<String>();
@@ -80,34 +94,329 @@ public class JavaBeanUtil {
 
 	
 	public static JavaBeanMap parseRecs(List<String> recs,List<Class<? extends BaseJavaBean>> types) throws Exception
+	{
+		return parseRecs(recs, new BeanTypeRegistry(types));
+	}
+	
+	/**
+	 * Load identifier or tagged records (see {@link BeanTypeRegistry}) into a map of beans by type, records of
+	 * any other type are skipped
+	 * @param recs
+	 * @param registry
+	 * @return
+	 * @throws Exception
+	 */
+	public static JavaBeanMap parseRecs(Iterable<String> recs, BeanTypeRegistry registry) throws Exception
 	{
 		JavaBeanMap bnMap = new JavaBeanMap();
-		for(Class<? extends BaseJavaBean> type: types)
+		for(int i = 0; i < registry.size(); i++)
 		{
-			bnMap.setJavaBean(type);
+			bnMap.setJavaBean(registry.getType(i));
 		}
 		
 		for (String rec: recs)
 		{
-			String[] parts = rec.split("~");
-			for(Class<? extends BaseJavaBean> type: types)
+			BaseJavaBean bean = registry.load(rec);
+			if (bean != null){
+				addRecord(bnMap, bean.getClass(), bean);
+			}
+		}
+		return bnMap;
+	}
+	
+	/**
+	 * Same as {@link #parseRecs(List, List)}, loaded in parallel on the common fork join pool
+	 * (see {@link #parseRecsParallel(List, BeanTypeRegistry, ForkJoinPool, boolean)})
+	 * @param recs
+	 * @param types
+	 * @param ordered
+	 * @return
+	 */
+	public static JavaBeanMap parseRecsParallel(List<String> recs, List<Class<? extends BaseJavaBean>> types, boolean ordered)
+	{
+		return parseRecsParallel(recs, new BeanTypeRegistry(types), ForkJoinPool.commonPool(), ordered);
+	}
+	
+	/**
+	 * Same as {@link #parseRecs(Iterable, BeanTypeRegistry)}, loaded in parallel.  The records are cut into ranges
+	 * and each range is loaded into its own lists on the pool, so the threads don't share anything while they parse.
+	 * <br> With ordered the ranges are put back together in order at the end, so each type's beans are in the same
+	 * order as their records (same as parseRecs).  Without it each range adds its beans to a
+	 * {@link JavaBeanMap#concurrent()} map as soon as it is done, in whatever order that is, and there is nothing
+	 * to put together at the end.
+	 * @param recs identifier or tagged records (a list that isn't RandomAccess is copied first)
+	 * @param registry
+	 * @param pool
+	 * @param ordered
+	 * @return
+	 */
+	public static JavaBeanMap parseRecsParallel(List<String> recs, BeanTypeRegistry registry, ForkJoinPool pool, boolean ordered)
+	{
+		if (!(recs instanceof RandomAccess))
+		{
+			recs = new ArrayList<String>(recs);
+		}
+		int size = recs.size();
+		// a few ranges for every thread, so one slow range doesn't hold the rest up
+		int range = Math.max(MIN_PARSE_RANGE, size / (pool.getParallelism() * 8));
+		int ranges = (size + range - 1) / range;
+		JavaBeanMap bnMap = ordered ? new JavaBeanMap() : JavaBeanMap.concurrent();
+		List<List<BaseJavaBean>[]> parts = new ArrayList<List<BaseJavaBean>[]>(ranges);
+		for (int i = 0; i < ranges; i++)
+		{
+			parts.add(null);
+		}
+		for(int i = 0; i < registry.size(); i++)
+		{
+			bnMap.setJavaBean(registry.getType(i), 0);
+		}
+		pool.invoke(new ParseTask(recs, registry, range, 0, ranges, ordered ? parts : null, bnMap));
+		if (ordered)
+		{
+			for(int tag = 0; tag < registry.size(); tag++)
 			{
-				if (type.getName().equalsIgnoreCase(parts[0])){
-					addRecord(getDelimiter(type),bnMap,rec,type);
+				if (registry.getTag(registry.getType(tag)) != tag)
+				{
+					// a type that is in the list twice only has records under its first tag
+					continue;
+				}
+				int count = 0;
+				for (List<BaseJavaBean>[] part: parts)
+				{
+					count += part[tag] == null ? 0 : part[tag].size();
+				}
+				bnMap.setJavaBean(registry.getType(tag), count);
+				for (List<BaseJavaBean>[] part: parts)
+				{
+					if (part[tag] != null)
+					{
+						addRecords(bnMap, registry.getType(tag), part[tag]);
+					}
 				}
 			}
 		}
 		return bnMap;
 	}
 	
-	private static <T extends BaseJavaBean> String getDelimiter(Class<T> type)
+	private static final int MIN_PARSE_RANGE = 1024;
+	
+	@SuppressWarnings("unchecked")
+	private static <T extends BaseJavaBean> void addRecords(JavaBeanMap bnMap, Class<T> type, List<BaseJavaBean> beans)
+	{
+		// every bean in the list was made from type
+		bnMap.addJavaBeans(type, (List<T>) (List<?>) beans);
+	}
+	
+	/**
+	 * Loads ranges from to to of the records, splitting in half until it's one range
+	 */
+	@SuppressWarnings("serial")
+	private static final class ParseTask extends RecursiveAction
+	{
+		private final List<String> recs;
+		private final BeanTypeRegistry registry;
+		private final int range;
+		private final int from;
+		private final int to;
+		// where each range's lists go when the order is kept, else they go straight into bnMap
+		private final List<List<BaseJavaBean>[]> parts;
+		private final JavaBeanMap bnMap;
+		
+		ParseTask(List<String> recs, BeanTypeRegistry registry, int range, int from, int to, List<List<BaseJavaBean>[]> parts, JavaBeanMap bnMap)
+		{
+			this.recs = recs;
+			this.registry = registry;
+			this.range = range;
+			this.from = from;
+			this.to = to;
+			this.parts = parts;
+			this.bnMap = bnMap;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to - from > 1)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new ParseTask(recs, registry, range, from, middle, parts, bnMap),
+						new ParseTask(recs, registry, range, middle, to, parts, bnMap));
+				return;
+			}
+			if (to == from)
+			{
+				return;
+			}
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			List<BaseJavaBean>[] lists = new List[registry.size()];
+			int end = Math.min(recs.size(), (from + 1) * range);
+			for (int i = from * range; i < end; i++)
+			{
+				String rec = recs.get(i);
+				int tag = registry.getTag(rec);
+				if (tag >= 0)
+				{
+					if (lists[tag] == null)
+					{
+						lists[tag] = new ArrayList<BaseJavaBean>();
+					}
+					lists[tag].add(registry.load(tag, rec, false));
+				}
+			}
+			if (parts != null)
+			{
+				parts.set(from, lists);
+				return;
+			}
+			for (int tag = 0; tag < lists.length; tag++)
+			{
+				if (lists[tag] != null)
+				{
+					addRecords(bnMap, registry.getType(tag), lists[tag]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Same grouping as {@link #parseRecs(List, List)}, except the beans aren't kept.  Each record is loaded into
+	 * a reusable bean for its type (see {@link BeanPool}) and handed to the consumer, so no matter how many
+	 * records there are only one bean per type is ever created.
+	 * <br> The bean is overwritten by the next record of the same type, copy anything you need to keep.
+	 * @param recs identifier records (see {@link BaseJavaBean#getIdentifierRecord()})
+	 * @param types
+	 * @param consumer
+	 */
+	public static void forEachRecord(Iterable<String> recs, List<Class<? extends BaseJavaBean>> types, Consumer<BaseJavaBean> consumer)
 	{
-		return BaseJavaBean.getDelimiter(type);
+		forEachRecord(recs, new BeanTypeRegistry(types), consumer);
+	}
+	
+	/**
+	 * Same as {@link #forEachRecord(Iterable, List, Consumer)}, with the types already registered
+	 * @param recs identifier or tagged records
+	 * @param registry
+	 * @param consumer
+	 */
+	public static void forEachRecord(Iterable<String> recs, BeanTypeRegistry registry, Consumer<BaseJavaBean> consumer)
+	{
+		for (String rec: recs)
+		{
+			BaseJavaBean bean = registry.loadReusable(rec);
+			if (bean != null){
+				consumer.accept(bean);
+			}
+		}
 	}
 	
-	private static <T extends BaseJavaBean> void addRecord(String delimiter, JavaBeanMap bnMap, String record, Class<T> type) throws Exception
+	private static <T extends BaseJavaBean> void addRecord(JavaBeanMap bnMap, Class<T> type, BaseJavaBean bean)
 	{
-		bnMap.addJavaBean(type, BaseJavaBean.loadJavaBeanRecord(delimiter, record, type));
+		bnMap.addJavaBean(type, type.cast(bean));
+	}
+	
+	/**
+	 * Load every line of a file into a bean (see {@link #readFile(Path, Class, boolean, String)})
+	 * @param path
+	 * @param type
+	 * @return the beans, in file order
+	 * @throws IOException
+	 */
+	public static <T extends BaseJavaBean> List<T> readFile(Path path, Class<T> type) throws IOException
+	{
+		return readFile(path, type, false, null);
+	}
+	
+	/**
+	 * Load every line of a file into a bean, the reverse of {@link #writeFile(Collection, String, boolean, boolean, String)}.
+	 * <br> The file is memory mapped and cut into chunks on line boundaries, and the chunks are loaded in parallel on
+	 * the common fork join pool, then put back together in order.  Blank lines are skipped, and a record number
+	 * isn't known while a chunk is loaded so every bean gets 0 (same as {@link BaseJavaBean#loadRecord(String)}).
+	 * @param path a UTF-8 file, one record per line
+	 * @param type
+	 * @param header true to skip the first line
+	 * @param delimiter the file's delimiter, null for the type's own
+	 * @return the beans, in file order
+	 * @throws IOException
+	 */
+	public static <T extends BaseJavaBean> List<T> readFile(Path path, Class<T> type, boolean header, String delimiter) throws IOException
+	{
+		try (BeanFileReader<T> reader = new BeanFileReader<T>(path, type, header, delimiter))
+		{
+			return reader.readAll();
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Same as {@link #readFile(Path, Class, boolean, String)} as a parallel stream, the chunks are loaded as the
+	 * stream gets to them so only the beans that are still being used are held.
+	 * <br> With ordered false the beans come in whatever order the chunks are loaded, which lets ops like
+	 * findAny, limit and distinct skip keeping the file order.
+	 * <br> The file stays open until the stream is closed (use try-with-resources).
+	 * @param path a UTF-8 file, one record per line
+	 * @param type
+	 * @param header true to skip the first line
+	 * @param delimiter the file's delimiter, null for the type's own
+	 * @param ordered
+	 * @return
+	 * @throws IOException
+	 */
+	public static <T extends BaseJavaBean> Stream<T> readFileStream(Path path, Class<T> type, boolean header, String delimiter, boolean ordered) throws IOException
+	{
+		BeanFileReader<T> reader = new BeanFileReader<T>(path, type, header, delimiter);
+		Stream<T> beans = IntStream.range(0, reader.chunks()).parallel()
+			.mapToObj(reader::read)
+			.flatMap(List::stream)
+			.onClose(() -> close(reader));
+		return ordered ? beans : beans.unordered();
+	}
+	
+	/**
+	 * A lazy stream of the beans in a file (see {@link #stream(Path, Class, boolean, String)})
+	 * @param path
+	 * @param type
+	 * @return
+	 * @throws IOException
+	 */
+	public static <T extends BaseJavaBean> Stream<T> stream(Path path, Class<T> type) throws IOException
+	{
+		return stream(path, type, false, null);
+	}
+	
+	/**
+	 * A lazy stream of the beans in a file, one per line.  A line is only loaded when the stream gets to it and
+	 * nothing is kept after that, so a file bigger than the heap can be filtered or summed up as long as the
+	 * beans aren't collected.
+	 * <br> The stream is sequential, call parallel() on it to load the file on the fork join pool (it is split
+	 * on line boundaries).  Unlike {@link #readFile(Path, Class, boolean, String)} the beans are loaded one at a
+	 * time, so a short-circuiting op like findFirst or limit stops reading the file.
+	 * <br> The file stays open until the stream is closed (use try-with-resources).
+	 * @param path a UTF-8 file, one record per line
+	 * @param type
+	 * @param header true to skip the first line
+	 * @param delimiter the file's delimiter, null for the type's own
+	 * @return
+	 * @throws IOException
+	 */
+	public static <T extends BaseJavaBean> Stream<T> stream(Path path, Class<T> type, boolean header, String delimiter) throws IOException
+	{
+		BeanFileReader<T> reader = new BeanFileReader<T>(path, type, header, delimiter);
+		return StreamSupport.stream(new BeanFileSpliterator<T>(reader), false).onClose(() -> close(reader));
+	}
+	
+	private static void close(BeanFileReader<?> reader)
+	{
+		try
+		{
+			reader.close();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
 	}
 	
 	public static <T extends BaseJavaBean> void writeCSVFile(Collection<T> bnsList, String fileName) throws IOException
@@ -139,7 +448,9 @@ public class JavaBeanUtil {
 				  writer.write(rec.createCSV(true, true, rec.getFields(includeSkip)));
 				  header = false;
 			  }
-			  writer.write(rec.createCSV(false, true, rec.getFields(includeSkip)));
+			  // straight into the writer, no String per record
+			  rec.appendTo(writer, includeSkip);
+			  writer.newLine();
 		  }
 		}catch(IOException e)
 		{
@@ -340,17 +651,7 @@ public class JavaBeanUtil {
 
 	public static Object getValueFromBean(BaseJavaBean bn, String getter) 
 	{
-		Object val = null;
-		try
-		{
-			Method meth = bn.getClass().getMethod(getter, new Class<?>[0]);
-			val = meth.invoke(bn, new Object[0]);
-		}
-		catch(Throwable t)
-		{
-			//
-		}
-		return val;
+		return bn.getValueFromBean(getter);
 	}
 
 	public static String getGetterName(String beanName) 
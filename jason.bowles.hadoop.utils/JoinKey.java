@@ -0,0 +1,170 @@
+package jason.bowles.hadoop.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * The map output key of a {@link BeanJoin}: the {@link BeanKey} of a bean and the side of the join it's from.
+ *
+ * <p> It sorts by the key and then the side, so within a key the build side's records come before the probe
+ * side's (a secondary sort), while {@link GroupingComparator} and {@link Partitioner} only look at the key, so
+ * both sides of a key end up in one reduce call.  It is written as the BeanKey and then one byte for the side,
+ * and {@link Comparator} (registered for the class) sorts it as bytes the same way BeanKey does.
+ * <br> {@link BeanJoin#configure(org.apache.hadoop.mapreduce.Job)} sets all of that on the job.
+ *
+ * @author id19868
+ */
+public class JoinKey implements WritableComparable<JoinKey>
+{
+	private static final BeanKey.Comparator KEYS = new BeanKey.Comparator();
+	private static final BeanKey.GroupingComparator GROUPS = new BeanKey.GroupingComparator();
+
+	static
+	{
+		WritableComparator.define(JoinKey.class, new Comparator());
+	}
+
+	private final BeanKey key = new BeanKey();
+	private byte side;
+
+	public JoinKey()
+	{
+	}
+
+	/**
+	 * @param key copied
+	 * @param side 0 - 127, lower sides sort first
+	 * @return this
+	 */
+	public JoinKey set(BeanKey key, int side)
+	{
+		if (side < 0 || side > Byte.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("side " + side + " isn't 0 - 127");
+		}
+		this.key.set(key);
+		this.side = (byte) side;
+		return this;
+	}
+
+	/**
+	 * @return the key (reused, {@link BeanKey#copy()} it to keep it)
+	 */
+	public BeanKey getKey()
+	{
+		return key;
+	}
+
+	public int getSide()
+	{
+		return side;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException
+	{
+		key.write(out);
+		out.writeByte(side);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException
+	{
+		key.readFields(in);
+		side = in.readByte();
+	}
+
+	@Override
+	public int compareTo(JoinKey other)
+	{
+		int c = key.compareTo(other.key);
+		return c != 0 ? c : Integer.compare(side, other.side);
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof JoinKey))
+		{
+			return false;
+		}
+		JoinKey other = (JoinKey) obj;
+		return side == other.side && key.equals(other.key);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return key.hashCode() * 31 + side;
+	}
+
+	@Override
+	public String toString()
+	{
+		return key + "/" + side;
+	}
+
+	/**
+	 * Sorts the serialized keys by their BeanKey bytes and then the side, without reading them back
+	 */
+	public static class Comparator extends WritableComparator
+	{
+		public Comparator()
+		{
+			super(JoinKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2)
+		{
+			// the side is the last byte
+			int c = KEYS.compare(b1, s1, l1 - 1, b2, s2, l2 - 1);
+			return c != 0 ? c : b1[s1 + l1 - 1] - b2[s2 + l2 - 1];
+		}
+	}
+
+	/**
+	 * Groups the reducer values by the BeanKey alone (see {@link BeanKey.GroupingComparator}), so both sides of
+	 * a key go to the same reduce call
+	 */
+	public static class GroupingComparator extends WritableComparator
+	{
+		public GroupingComparator()
+		{
+			super(JoinKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2)
+		{
+			return GROUPS.compare(b1, s1, l1 - 1, b2, s2, l2 - 1);
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public int compare(WritableComparable a, WritableComparable b)
+		{
+			return GROUPS.compare(((JoinKey) a).key, ((JoinKey) b).key);
+		}
+	}
+
+	/**
+	 * Sends each key to a reducer by the hash of its BeanKey (not the side, both sides go to the same one)
+	 */
+	public static class Partitioner<V> extends org.apache.hadoop.mapreduce.Partitioner<JoinKey, V>
+	{
+		@Override
+		public int getPartition(JoinKey key, V value, int numPartitions)
+		{
+			return (int) ((key.key.getHash() & Long.MAX_VALUE) % numPartitions);
+		}
+	}
+}
@@ -0,0 +1,440 @@
+package jason.bowles.hadoop.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * Parses the numbers found in flat files without creating any Strings along the way.
+ *
+ * <p> Handles the same formats {@link BaseJavaBean} always has:
+ * <ul>
+ * <li> accounting negatives (1,234.50)
+ * <li> a leading $
+ * <li> a trailing % (the value is divided by 100)
+ * <li> thousands separators (commas are ignored wherever they are)
+ * </ul>
+ *
+ * <p> Plain decimal numbers are handled in one pass over the characters and kept as an exact unscaled long,
+ * so {@link #intValue()}, {@link #longValue()} and {@link #bigDecimalValue()} never go through a double (a long
+ * id above 2^53 comes out exactly).  Anything fancier (exponents, NaN, more digits than a long holds...) falls
+ * back to {@link Double#parseDouble(String)} / {@link BigDecimal#BigDecimal(String)}.
+ *
+ * <p> Not thread-safe, use {@link #get()} for the one that belongs to the current thread.
+ *
+ * @author id19868
+ */
+public final class NumberParser
+{
+	private static final ThreadLocal<NumberParser> LOCAL = new ThreadLocal<NumberParser>()
+	{
+		@Override
+		protected NumberParser initialValue()
+		{
+			return new NumberParser();
+		}
+	};
+
+	// powers of ten that are exact as doubles
+	private static final double[] POWERS_OF_TEN = new double[23];
+	// and as floats
+	private static final float[] FLOAT_POWERS_OF_TEN = new float[11];
+	private static final long[] LONG_POWERS_OF_TEN = new long[19];
+	static
+	{
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+		{
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i-1] * 10;
+		}
+		FLOAT_POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < FLOAT_POWERS_OF_TEN.length; i++)
+		{
+			FLOAT_POWERS_OF_TEN[i] = FLOAT_POWERS_OF_TEN[i-1] * 10;
+		}
+		LONG_POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < LONG_POWERS_OF_TEN.length; i++)
+		{
+			LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i-1] * 10;
+		}
+	}
+	private static final long MAX_EXACT = 1L << 53;
+	private static final long MAX_EXACT_FLOAT = 1L << 24;
+	private static final BigDecimal LONG_LIMIT = BigDecimal.valueOf(Long.MAX_VALUE);
+
+	// the value is (negative ? -mantissa : mantissa) / 10^scale when exact is true
+	private boolean exact;
+	private boolean negative;
+	private long mantissa;
+	private int scale;
+	// otherwise the number (without commas, $, % or parentheses) is in the scratch buffer
+	private final StringBuilder scratch = new StringBuilder();
+	private boolean percent;
+	private boolean parens;
+	private double doubleValue;
+
+	public static NumberParser get()
+	{
+		return LOCAL.get();
+	}
+
+	/**
+	 * @param type Integer, Long, Float, Double or BigDecimal
+	 * @return true if {@link #valueOf(Class)} can make that type
+	 */
+	public static boolean isNumber(Class<?> type)
+	{
+		return type == Integer.class || type == Double.class || type == Long.class || type == Float.class || type == BigDecimal.class;
+	}
+
+	/**
+	 * @param type Integer, Long, Float, Double or BigDecimal
+	 * @return the value from the last successful parse as that type (null if it can't be, like NaN for a BigDecimal)
+	 */
+	public Object valueOf(Class<?> type)
+	{
+		if (type == Integer.class)
+		{
+			return intValue();
+		}
+		if (type == Long.class)
+		{
+			return longValue();
+		}
+		if (type == Double.class)
+		{
+			return doubleValue();
+		}
+		if (type == Float.class)
+		{
+			return floatValue();
+		}
+		if (type == BigDecimal.class)
+		{
+			return bigDecimalValue();
+		}
+		return null;
+	}
+
+	/**
+	 * @return the value from the last successful {@link #parse(CharSequence, int, int)}
+	 */
+	public double doubleValue()
+	{
+		return doubleValue;
+	}
+
+	/**
+	 * @return the value from the last successful parse, as close as a float gets
+	 */
+	public float floatValue()
+	{
+		int totalScale = percent ? scale + 2 : scale;
+		if (exact && mantissa < MAX_EXACT_FLOAT && totalScale < FLOAT_POWERS_OF_TEN.length)
+		{
+			float value = totalScale == 0 ? mantissa : mantissa / FLOAT_POWERS_OF_TEN[totalScale];
+			return isNegative() ? -value : value;
+		}
+		return (float) doubleValue;
+	}
+
+	/**
+	 * @return the value from the last successful parse, anything after the decimal point is dropped
+	 *  (a value too big for a long is cut down the same way {@link Double#longValue()} does)
+	 */
+	public long longValue()
+	{
+		if (!exact)
+		{
+			BigDecimal value = bigDecimalValue();
+			if (value != null && value.abs().compareTo(LONG_LIMIT) < 0)
+			{
+				return value.longValue();
+			}
+			return (long) doubleValue;
+		}
+		int totalScale = percent ? scale + 2 : scale;
+		long value = totalScale == 0 ? mantissa : totalScale < LONG_POWERS_OF_TEN.length ? mantissa / LONG_POWERS_OF_TEN[totalScale] : 0;
+		return isNegative() ? -value : value;
+	}
+
+	/**
+	 * @return the value from the last successful parse, anything after the decimal point is dropped
+	 *  (a value too big for an int is cut down the same way {@link Double#intValue()} does)
+	 */
+	public int intValue()
+	{
+		long value = longValue();
+		return value > Integer.MAX_VALUE ? Integer.MAX_VALUE : value < Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) value;
+	}
+
+	/**
+	 * @return the exact value from the last successful parse, null if it isn't a finite decimal number
+	 */
+	public BigDecimal bigDecimalValue()
+	{
+		BigDecimal value;
+		if (exact)
+		{
+			value = BigDecimal.valueOf(negative ? -mantissa : mantissa, scale);
+		}
+		else if (Double.isNaN(doubleValue) || scratch.indexOf("Infinity") >= 0)
+		{
+			return null;
+		}
+		else
+		{
+			try
+			{
+				value = new BigDecimal(scratch.toString());
+			}
+			catch (NumberFormatException e)
+			{
+				return null;
+			}
+		}
+		if (percent)
+		{
+			value = value.movePointLeft(2);
+		}
+		return parens ? value.negate() : value;
+	}
+
+	private boolean isNegative()
+	{
+		return negative != parens;
+	}
+
+	/**
+	 * Parse the number between start and end
+	 * @param chars
+	 * @param start
+	 * @param end
+	 * @return false if it isn't a number (nothing is thrown)
+	 */
+	public boolean parse(CharSequence chars, int start, int end)
+	{
+		boolean negativeParens = false;
+		boolean hasPercent = false;
+		if (end - start >= 2 && chars.charAt(start) == '(' && chars.charAt(end - 1) == ')')
+		{
+			start++;
+			end--;
+			negativeParens = true;
+		}
+		if (start < end && chars.charAt(start) == '$')
+		{
+			start++;
+		}
+		if (start < end && chars.charAt(end - 1) == '%')
+		{
+			end--;
+			hasPercent = true;
+		}
+		while (start < end && chars.charAt(start) <= ' ')
+		{
+			start++;
+		}
+		while (end > start && chars.charAt(end - 1) <= ' ')
+		{
+			end--;
+		}
+
+		this.parens = negativeParens;
+		this.percent = hasPercent;
+		if (!parseDecimal(chars, start, end) && !parseSlow(chars, start, end))
+		{
+			return false;
+		}
+		if (percent)
+		{
+			doubleValue = doubleValue / 100;
+		}
+		if (parens)
+		{
+			doubleValue = doubleValue * -1;
+		}
+		return true;
+	}
+
+	/**
+	 * The fast path: [+-]digits[.digits] with commas anywhere, as long as the digits fit in a long
+	 */
+	private boolean parseDecimal(CharSequence chars, int start, int end)
+	{
+		int i = start;
+		boolean minus = false;
+		if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+'))
+		{
+			minus = chars.charAt(i) == '-';
+			i++;
+		}
+		long digitsValue = 0;
+		int digits = 0;
+		int decimals = 0;
+		boolean point = false;
+		for (; i < end; i++)
+		{
+			char c = chars.charAt(i);
+			if (c >= '0' && c <= '9')
+			{
+				int digit = c - '0';
+				if (digitsValue > (Long.MAX_VALUE - digit) / 10)
+				{
+					return false;
+				}
+				digitsValue = digitsValue * 10 + digit;
+				digits++;
+				if (point)
+				{
+					decimals++;
+				}
+			}
+			else if (c == '.' && !point)
+			{
+				point = true;
+			}
+			else if (c != ',')
+			{
+				return false;
+			}
+		}
+		if (digits == 0)
+		{
+			return false;
+		}
+		this.exact = true;
+		this.negative = minus;
+		this.mantissa = digitsValue;
+		this.scale = decimals;
+		if (digitsValue < MAX_EXACT && decimals < POWERS_OF_TEN.length)
+		{
+			double value = decimals == 0 ? digitsValue : digitsValue / POWERS_OF_TEN[decimals];
+			doubleValue = minus ? -value : value;
+		}
+		else
+		{
+			// too many digits for the quick double, let the JDK round it
+			fillScratch(chars, start, end);
+			doubleValue = Double.parseDouble(scratch.toString());
+		}
+		return true;
+	}
+
+	private boolean parseSlow(CharSequence chars, int start, int end)
+	{
+		this.exact = false;
+		fillScratch(chars, start, end);
+		if (!isDouble(scratch))
+		{
+			// junk, don't make parseDouble build an exception to tell us so
+			return false;
+		}
+		try
+		{
+			doubleValue = Double.parseDouble(scratch.toString());
+			return true;
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * @return false if {@link Double#parseDouble(String)} would certainly throw (true doesn't promise it won't
+	 *  for the odd forms like hex, those are left to it)
+	 */
+	private static boolean isDouble(CharSequence s)
+	{
+		// parseDouble trims, so does this
+		int n = s.length();
+		while (n > 0 && s.charAt(n - 1) <= ' ')
+		{
+			n--;
+		}
+		int i = 0;
+		while (i < n && s.charAt(i) <= ' ')
+		{
+			i++;
+		}
+		if (i < n && (s.charAt(i) == '+' || s.charAt(i) == '-'))
+		{
+			i++;
+		}
+		if (matches(s, i, "NaN") || matches(s, i, "Infinity") || matches(s, i, "0x") || matches(s, i, "0X"))
+		{
+			return true;
+		}
+		int digits = 0;
+		while (i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9')
+		{
+			i++;
+			digits++;
+		}
+		if (i < n && s.charAt(i) == '.')
+		{
+			i++;
+			while (i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9')
+			{
+				i++;
+				digits++;
+			}
+		}
+		if (digits == 0)
+		{
+			return false;
+		}
+		if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E'))
+		{
+			i++;
+			if (i < n && (s.charAt(i) == '+' || s.charAt(i) == '-'))
+			{
+				i++;
+			}
+			int exponent = 0;
+			while (i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9')
+			{
+				i++;
+				exponent++;
+			}
+			if (exponent == 0)
+			{
+				return false;
+			}
+		}
+		// java takes a float / double suffix
+		if (i < n && "fFdD".indexOf(s.charAt(i)) >= 0)
+		{
+			i++;
+		}
+		return i == n;
+	}
+
+	private static boolean matches(CharSequence s, int offset, String text)
+	{
+		if (s.length() - offset < text.length())
+		{
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++)
+		{
+			if (s.charAt(offset + i) != text.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void fillScratch(CharSequence chars, int start, int end)
+	{
+		scratch.setLength(0);
+		for (int i = start; i < end; i++)
+		{
+			char c = chars.charAt(i);
+			if (c != ',')
+			{
+				scratch.append(c);
+			}
+		}
+	}
+}
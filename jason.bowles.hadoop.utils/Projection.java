@@ -0,0 +1,123 @@
+package jason.bowles.hadoop.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The fields a job actually reads.  Everything else in the record is stepped over without being cut out
+ * of the line or converted.
+ * <pre>
+ * {@code
+ * ExampleBean eb = new ExampleBean();
+ * eb.loadRecord(line, Projection.of("field1","field3"));
+ * }
+ * </pre>
+ * or set it once with {@link BaseJavaBean#setProjection(Projection)} (a bean class can do that in its
+ * constructor to always load the same fields).
+ *
+ * <p> Unlike a skip field ({@link BaseJavaBean#addName(String, boolean)}), a projection doesn't change the
+ * layout of the bean, the other fields just stay null.  The tokenizer also stops at the last projected column,
+ * so the rest of a wide record is never even looked at.
+ *
+ * <p> Projections are immutable and thread-safe, build them once and share them.
+ *
+ * @author id19868
+ */
+public final class Projection
+{
+	private final Set<String> fields;
+	// which columns to load, worked out once for each schema this is used with
+	private final ConcurrentMap<BeanSchema, Columns> columns = new ConcurrentHashMap<BeanSchema, Columns>();
+
+	private Projection(Set<String> fields)
+	{
+		this.fields = Collections.unmodifiableSet(fields);
+	}
+
+	/**
+	 * @param fields the names of the fields to load
+	 * @return
+	 */
+	public static Projection of(String... fields)
+	{
+		return new Projection(new LinkedHashSet<String>(Arrays.asList(fields)));
+	}
+
+	public Set<String> getFields()
+	{
+		return fields;
+	}
+
+	public boolean contains(String field)
+	{
+		return fields.contains(field);
+	}
+
+	/**
+	 * @param schema
+	 * @return the columns of the schema to load
+	 */
+	Columns columns(BeanSchema schema)
+	{
+		Columns cols = columns.get(schema);
+		if (cols == null)
+		{
+			cols = new Columns(schema, fields);
+			columns.putIfAbsent(schema, cols);
+		}
+		return cols;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Projection" + fields;
+	}
+
+	/**
+	 * A projection worked out against one schema
+	 */
+	static final class Columns
+	{
+		private final boolean[] load;
+		private final int width;
+
+		Columns(BeanSchema schema, Set<String> fields)
+		{
+			this.load = new boolean[schema.getColumnCount()];
+			int last = 0;
+			for (String field: fields)
+			{
+				Integer order = schema.getOrder(field);
+				if (order == null)
+				{
+					throw new IllegalArgumentException("No field exists by that name: " + field);
+				}
+				load[order - 1] = !schema.isSkipped(order - 1);
+				last = Math.max(last, order);
+			}
+			this.width = last;
+		}
+
+		/**
+		 * @param column zero based
+		 * @return true if the column should be loaded
+		 */
+		boolean isLoaded(int column)
+		{
+			return column < load.length && load[column];
+		}
+
+		/**
+		 * @return how many columns need to be tokenized to get every projected one
+		 */
+		int width()
+		{
+			return width;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package jason.bowles.hadoop.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * The buffer a record is written into before it goes to a Writer, a Text or a ByteBuffer.
+ *
+ * <p> The record is built in a StringBuilder that is kept for the thread, then copied out as chars (to a Writer)
+ * or encoded to UTF-8 straight into a byte array that is also kept (for a Text or a ByteBuffer).  So writing a
+ * record doesn't make a String, or a byte[] for one.
+ *
+ * <p> Not thread-safe, use {@link #acquire()} to borrow the one for the current thread.
+ *
+ * @author id19868
+ */
+final class RecordBuffer
+{
+	// a buffer that grew past this (one huge record) isn't kept around
+	private static final int KEEP_LIMIT = 64 * 1024;
+
+	private static final ThreadLocal<RecordBuffer> LOCAL = new ThreadLocal<RecordBuffer>();
+
+	private StringBuilder chars = new StringBuilder(256);
+	private char[] copy = new char[256];
+	private byte[] bytes = new byte[768];
+
+	private RecordBuffer()
+	{
+	}
+
+	/**
+	 * Borrow this thread's buffer, empty (hand it back with {@link #release()} when done)
+	 * <br> If it is already in use (a getter writing out another bean) you just get a new one
+	 * @return
+	 */
+	static RecordBuffer acquire()
+	{
+		RecordBuffer buffer = LOCAL.get();
+		if (buffer == null)
+		{
+			return new RecordBuffer();
+		}
+		LOCAL.set(null);
+		return buffer;
+	}
+
+	/**
+	 * Give the buffer back so the next {@link #acquire()} on this thread can use it
+	 */
+	void release()
+	{
+		if (chars.capacity() > KEEP_LIMIT)
+		{
+			chars = new StringBuilder(256);
+			copy = new char[256];
+			bytes = new byte[768];
+		}
+		chars.setLength(0);
+		LOCAL.set(this);
+	}
+
+	/**
+	 * @return the buffer to write the record into
+	 */
+	StringBuilder chars()
+	{
+		return chars;
+	}
+
+	/**
+	 * Append what is in the buffer to out
+	 * @param out
+	 * @throws IOException
+	 */
+	void writeTo(Appendable out) throws IOException
+	{
+		if (out instanceof Writer)
+		{
+			// Writer.append(CharSequence) would make a String out of it
+			int length = chars.length();
+			if (copy.length < length)
+			{
+				copy = new char[Math.max(length, copy.length * 2)];
+			}
+			chars.getChars(0, length, copy, 0);
+			((Writer) out).write(copy, 0, length);
+		}
+		else
+		{
+			out.append(chars);
+		}
+	}
+
+	/**
+	 * Append what is in the buffer to the end of the text (UTF-8)
+	 * @param text
+	 */
+	void writeTo(Text text)
+	{
+		int length = encode();
+		text.append(bytes, 0, length);
+	}
+
+	/**
+	 * Put what is in the buffer into the byte buffer (UTF-8), at its position
+	 * @param buffer
+	 * @throws BufferOverflowException if it doesn't fit (nothing is written)
+	 */
+	void writeTo(ByteBuffer buffer)
+	{
+		int length = encode();
+		buffer.put(bytes, 0, length);
+	}
+
+	/**
+	 * UTF-8 encode the buffer into {@link #bytes}, a bad surrogate becomes a ? (like String.getBytes)
+	 * @return the number of bytes
+	 */
+	private int encode()
+	{
+		int length = chars.length();
+		// no char takes more than 3 bytes (a pair of surrogates takes 4)
+		if (bytes.length < length * 3)
+		{
+			bytes = new byte[Math.max(length * 3, bytes.length * 2)];
+		}
+		byte[] out = bytes;
+		int n = 0;
+		for (int i = 0; i < length; i++)
+		{
+			char c = chars.charAt(i);
+			if (c < 0x80)
+			{
+				out[n++] = (byte) c;
+			}
+			else if (c < 0x800)
+			{
+				out[n++] = (byte) (0xc0 | (c >> 6));
+				out[n++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isSurrogate(c))
+			{
+				char low = i + 1 < length ? chars.charAt(i + 1) : 0;
+				if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low))
+				{
+					int cp = Character.toCodePoint(c, low);
+					out[n++] = (byte) (0xf0 | (cp >> 18));
+					out[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+					out[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+					out[n++] = (byte) (0x80 | (cp & 0x3f));
+					i++;
+				}
+				else
+				{
+					out[n++] = (byte) '?';
+				}
+			}
+			else
+			{
+				out[n++] = (byte) (0xe0 | (c >> 12));
+				out[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				out[n++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		return n;
+	}
+}